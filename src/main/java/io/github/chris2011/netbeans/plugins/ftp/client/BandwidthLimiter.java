@@ -0,0 +1,102 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Token bucket that caps the bytes per second of the transfers sharing it.
+ * <p>
+ * The bucket holds at most one second worth of tokens. Taking more tokens
+ * than are available puts the bucket into debt, and the caller sleeps until
+ * it is paid back, so buffers larger than the rate still work. Sleeps are cut
+ * into short slices so that a changed rate takes effect on running transfers.
+ * A limiter may have a parent, e.g. the global limit, which is charged as
+ * well.
+ */
+final class BandwidthLimiter {
+
+    private static final long MAX_SLEEP = 100;
+
+    static final BandwidthLimiter GLOBAL_DOWNLOAD = new BandwidthLimiter(null);
+    static final BandwidthLimiter GLOBAL_UPLOAD = new BandwidthLimiter(null);
+
+    static {
+        GLOBAL_DOWNLOAD.setRate(FtpSettings.getMaxDownloadRate() * 1024L);
+        GLOBAL_UPLOAD.setRate(FtpSettings.getMaxUploadRate() * 1024L);
+    }
+
+    private final BandwidthLimiter parent;
+    private long rate;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    BandwidthLimiter(BandwidthLimiter parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @param bytesPerSecond the new cap, 0 or less for unlimited
+     */
+    synchronized void setRate(long bytesPerSecond) {
+        refill();
+        rate = Math.max(0, bytesPerSecond);
+        tokens = Math.min(tokens, rate);
+        if (rate == 0) {
+            tokens = 0;
+        }
+    }
+
+    synchronized long getRate() {
+        return rate;
+    }
+
+    /**
+     * Takes {@code bytes} tokens, blocking while this or the parent limit is
+     * exceeded.
+     */
+    void acquire(int bytes) throws InterruptedIOException {
+        long wait;
+        synchronized (this) {
+            refill();
+            if (rate > 0) {
+                tokens -= bytes;
+            }
+            wait = waitMillis(tokens, rate);
+        }
+
+        while (wait > 0) {
+            try {
+                Thread.sleep(Math.min(wait, MAX_SLEEP));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Transfer interrupted");
+            }
+            synchronized (this) {
+                refill();
+                wait = waitMillis(tokens, rate);
+            }
+        }
+
+        if (parent != null) {
+            parent.acquire(bytes);
+        }
+    }
+
+    /**
+     * How long to sleep until a bucket in debt by {@code -tokens} is paid
+     * back at {@code rate} bytes per second.
+     */
+    static long waitMillis(double tokens, long rate) {
+        if (rate <= 0 || tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens * 1000 / rate);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (rate > 0) {
+            tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1e9);
+        }
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openide.util.RequestProcessor;
+
+/**
+ * {@link FtpServerCapabilities} per {@code host:port}, kept in
+ * {@code capabilities.cache} next to connections.json.
+ * <p>
+ * One tab separated line per server: key, discovery time, SYST reply and the
+ * FEAT lines. Entries are rediscovered after {@link #MAX_AGE} so server
+ * upgrades are picked up eventually.
+ */
+final class FtpCapabilityStore {
+
+    static final long MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+    private static final RequestProcessor RP = new RequestProcessor("FtpCapabilityStore", 1);
+    private static FtpCapabilityStore instance;
+
+    private final Path file;
+    private final Map<String, FtpServerCapabilities> capabilities = new HashMap<>();
+    private final RequestProcessor.Task saveTask;
+
+    private FtpCapabilityStore(Path file) {
+        this.file = file;
+        this.saveTask = RP.create(this::save);
+        load();
+    }
+
+    static synchronized FtpCapabilityStore getDefault() {
+        if (instance == null) {
+            instance = new FtpCapabilityStore(
+                FtpConnectionManager.getInstance().getConfigDirectory().resolve("capabilities.cache"));
+        }
+        return instance;
+    }
+
+    /**
+     * @return the capabilities, {@code null} if unknown or outdated
+     */
+    synchronized FtpServerCapabilities get(String host, int port) {
+        FtpServerCapabilities cached = capabilities.get(key(host, port));
+        if (cached == null || System.currentTimeMillis() - cached.getDiscoveredAt() > MAX_AGE) {
+            return null;
+        }
+        return cached;
+    }
+
+    void put(String host, int port, FtpServerCapabilities discovered) {
+        synchronized (this) {
+            capabilities.put(key(host, port), discovered);
+        }
+        saveTask.schedule(0);
+    }
+
+    void remove(String host, int port) {
+        boolean removed;
+        synchronized (this) {
+            removed = capabilities.remove(key(host, port)) != null;
+        }
+        if (removed) {
+            saveTask.schedule(0);
+        }
+    }
+
+    private static String key(String host, int port) {
+        return host.toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] f = FtpListingStore.split(line);
+                List<String> features = Arrays.asList(f).subList(3, f.length);
+                capabilities.put(f[0], FtpServerCapabilities.of(f[2].isEmpty() ? null : f[2],
+                    prefixed(features), Long.parseLong(f[1])));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load server capabilities: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stored lines lack the leading space of a FEAT reply line.
+     */
+    private static List<String> prefixed(List<String> features) {
+        List<String> lines = new ArrayList<>(features.size());
+        for (String feature : features) {
+            lines.add(" " + feature);
+        }
+        return lines;
+    }
+
+    private void save() {
+        Map<String, FtpServerCapabilities> snapshot;
+        synchronized (this) {
+            snapshot = new HashMap<>(capabilities);
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, FtpServerCapabilities> entry : snapshot.entrySet()) {
+                    FtpServerCapabilities caps = entry.getValue();
+                    StringBuilder line = new StringBuilder()
+                        .append(FtpListingStore.escape(entry.getKey())).append('\t')
+                        .append(caps.getDiscoveredAt()).append('\t')
+                        .append(FtpListingStore.escape(caps.getSystemType()));
+                    for (String feature : caps.getFeatureLines()) {
+                        line.append('\t').append(FtpListingStore.escape(feature));
+                    }
+                    writer.write(line.toString());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to save server capabilities: " + e.getMessage());
+        }
+    }
+}
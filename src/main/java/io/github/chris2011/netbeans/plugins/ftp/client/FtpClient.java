@@ -2,31 +2,120 @@ package io.github.chris2011.netbeans.plugins.ftp.client;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import org.apache.commons.net.ftp.FTP;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
 import org.apache.commons.net.ftp.FTPFile;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.io.CopyStreamEvent;
+import org.apache.commons.net.io.CopyStreamListener;
+import org.openide.util.RequestProcessor;
 
 public class FtpClient {
 
     public static final String PROP_CONNECTED = "connected";
     public static final String PROP_DISCONNECTED = "disconnected";
 
+    public static final int LISTING_PAGE_SIZE = 500;
+    static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     private static final Map<String, FtpClient> instances = new HashMap<>();
 
+    private static final RequestProcessor RP = new RequestProcessor("FtpClient", 1, true);
+    private static final int SAVE_LISTINGS_DELAY = 5000;
+
     private final FtpConnection connection;
+    // One copy buffer per transfer thread instead of one per transfer
+    private static final ThreadLocal<byte[]> TRANSFER_BUFFER
+        = ThreadLocal.withInitial(() -> new byte[TRANSFER_BUFFER_SIZE]);
+
     private final PropertyChangeSupport pcs;
-    FTPClient ftpClient; // Package-private for FtpFileObject access
-    private boolean connected = false;
+    private final FtpListingCache listingCache = new FtpListingCache();
+    private final RequestProcessor.Task saveListingsTask;
+    private final BandwidthLimiter downloadLimiter = new BandwidthLimiter(BandwidthLimiter.GLOBAL_DOWNLOAD);
+    private final BandwidthLimiter uploadLimiter = new BandwidthLimiter(BandwidthLimiter.GLOBAL_UPLOAD);
+    private final FtpMetrics metrics = new FtpMetrics();
+    private final FtpClientStats stats;
+    private volatile FtpSessionPool sessionPool;
+    private volatile boolean connected = false;
+    private volatile FtpServerCapabilities capabilities;
+    private volatile CompletableFuture<Void> rootPrefetch;
+
+    /**
+     * Receives one page of a streamed directory listing.
+     */
+    public interface PageConsumer {
+
+        /**
+         * @return {@code false} to stop the listing
+         */
+        boolean accept(List<FtpFile> page);
+    }
+
+    /**
+     * Observes the progress of a transfer.
+     */
+    public interface TransferListener {
+
+        /**
+         * @param bytes total number of bytes transferred so far
+         * @return {@code false} to abort the transfer
+         */
+        boolean transferred(long bytes);
+
+        /**
+         * The transfer starts over, e.g. in a single stream after a refused
+         * segmented download; the totals reported from now on do not include
+         * the bytes reported before.
+         */
+        default void restarted() {
+        }
+
+        /**
+         * Whether a transfer aborted by {@link #transferred} stays in the
+         * transfer journal, so it can be resumed later.
+         */
+        default boolean isResumable() {
+            return false;
+        }
+    }
+
+    /**
+     * Work executed on a borrowed session.
+     */
+    interface SessionCallback<T> {
+
+        T run(FtpSession session) throws IOException;
+    }
 
     private FtpClient(FtpConnection connection) {
         this.connection = connection;
         this.pcs = new PropertyChangeSupport(this);
+        this.saveListingsTask = RP.create(() -> FtpListingStore.save(connection.getId(), listingCache));
+        applyLimits();
+        this.stats = FtpClientStats.register(this);
     }
 
     public static synchronized FtpClient getInstance(FtpConnection connection) {
@@ -52,7 +141,13 @@ public class FtpClient {
         FtpClient instance = instances.get(connection.getName());
         if (instance != null) {
             instance.disconnect();
+            instance.saveListingsTask.cancel();
+            instance.stats.unregister();
             instances.remove(connection.getName());
+            // After a save that is already running, which cancel() does not stop
+            String connectionId = connection.getId();
+            RP.post(() -> FtpListingStore.delete(connectionId));
+            FtpTransferJournal.getDefault().removeAll(connection.getId());
         }
     }
 
@@ -65,35 +160,67 @@ public class FtpClient {
             this.connection.setUsername(newConnection.getUsername());
             this.connection.setPassword(newConnection.getPassword());
             this.connection.setPassiveMode(newConnection.isPassiveMode());
+            this.connection.setMaxSessions(newConnection.getMaxSessions());
+            this.connection.setMaxDownloadRate(newConnection.getMaxDownloadRate());
+            this.connection.setMaxUploadRate(newConnection.getMaxUploadRate());
         }
+
+        applyLimits();
     }
 
-    public boolean connect() throws IOException {
-        if (connected) return true;
+    /**
+     * Applies changed session and bandwidth limits of the connection, running
+     * transfers included.
+     */
+    void applyLimits() {
+        FtpSessionPool pool = sessionPool;
+        if (pool != null) {
+            pool.setMaxSize(connection.getMaxSessions());
+        }
+        downloadLimiter.setRate(connection.getMaxDownloadRate() * 1024L);
+        uploadLimiter.setRate(connection.getMaxUploadRate() * 1024L);
+    }
 
-        ftpClient = new FTPClient();
+    /**
+     * Command latencies, transfer throughput and error counters of this
+     * connection.
+     */
+    public FtpMetrics getMetrics() {
+        return metrics;
+    }
 
-        try {
-            ftpClient.connect(connection.getHost(), connection.getPort());
+    BandwidthLimiter getDownloadLimiter() {
+        return downloadLimiter;
+    }
 
-            if (!FTPReply.isPositiveCompletion(ftpClient.getReplyCode())) {
-                throw new IOException("FTP server refused connection.");
-            }
+    public synchronized boolean connect() throws IOException {
+        if (connected) return true;
 
-            if (!ftpClient.login(connection.getUsername(), connection.getPassword())) {
-                throw new IOException("FTP login failed.");
-            }
+        capabilities = FtpCapabilityStore.getDefault().get(connection.getHost(), connection.getPort());
+        if (listingCache.getListingCount() == 0) {
+            FtpListingStore.load(connection.getId(), listingCache);
+        }
+        FtpSessionPool pool = new FtpSessionPool(this::openSession, connection.getMaxSessions());
+        sessionPool = pool;
 
-            if (connection.isPassiveMode()) {
-                ftpClient.enterLocalPassiveMode();
-            } else {
-                ftpClient.enterLocalActiveMode();
+        FtpFlightRecorderEvents.Connect event = new FtpFlightRecorderEvents.Connect();
+        event.begin();
+        try {
+            // Open the first session right away so that bad credentials fail here
+            FtpSession first = pool.borrow();
+            // A last known listing is shown right away and revalidated anyway
+            boolean prefetch = FtpSettings.isFastConnect() && listingCache.getLastKnown("/") == null;
+            if (!prefetch) {
+                pool.release(first);
             }
-
-            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+            commit(event, FtpFlightRecorderEvents.SUCCESS);
 
             connected = true;
             connection.setConnected(true);
+            if (prefetch) {
+                prefetchRoot(pool, first);
+            }
+            resumeJournaledTransfers();
 
             // Fire event to notify all listeners
             pcs.firePropertyChange(PROP_CONNECTED, false, true);
@@ -102,21 +229,149 @@ public class FtpClient {
             return true;
 
         } catch (IOException e) {
+            commit(event, FtpFlightRecorderEvents.FAILED);
             disconnect();
             throw e;
         }
     }
 
+    /**
+     * Lists the root directory into the cache in the background, on the
+     * session that just logged in, so the explorer does not wait for another
+     * borrow after the connected event. {@link #listFiles(String, int, PageConsumer)}
+     * of the root waits for it instead of listing twice. A failure here only
+     * means the explorer lists the root itself.
+     */
+    private void prefetchRoot(FtpSessionPool pool, FtpSession session) {
+        rootPrefetch = FtpIoExecutor.getDefault().post("Prefetch / of " + connection.getName(), () -> {
+            List<FtpFile> loaded = new ArrayList<>();
+            long started = System.nanoTime();
+            try {
+                streamFiles(session, "/", LISTING_PAGE_SIZE, loaded::addAll);
+                metrics.recordLatency(FtpMetrics.LISTING, System.nanoTime() - started);
+                listingCache.put("/", loaded);
+                saveListingsTask.schedule(SAVE_LISTINGS_DELAY);
+                pool.release(session);
+            } catch (IOException | RuntimeException e) {
+                pool.invalidate(session);
+            } finally {
+                rootPrefetch = null;
+            }
+        }).getResult();
+    }
+
+    private void commit(FtpFlightRecorderEvents.Connect event, String outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.connectionId = connection.getId();
+            event.host = connection.getHost();
+            event.port = connection.getPort();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private FtpSession openSession() throws IOException {
+        FtpSession session = new FtpSession();
+        session.addProtocolCommandListener(metrics.newCommandListener());
+
+        FtpServerCapabilities known = capabilities;
+        if (known != null) {
+            // The control streams are created by connect, so the encoding goes first
+            if (known.supportsUtf8()) {
+                session.setControlEncoding("UTF-8");
+            }
+            if (known.toClientConfig() != null) {
+                session.configure(known.toClientConfig());
+            }
+        }
+
+        try {
+            long started = System.nanoTime();
+            session.connect(connection.getHost(), connection.getPort());
+            metrics.recordLatency(FtpMetrics.CONNECT, System.nanoTime() - started);
+
+            if (!FTPReply.isPositiveCompletion(session.getReplyCode())) {
+                throw new IOException("FTP server refused connection.");
+            }
+
+            if (!session.login(connection.getUsername(), connection.getPassword())) {
+                throw new IOException("FTP login failed.");
+            }
+
+            if (connection.isPassiveMode()) {
+                session.enterLocalPassiveMode();
+            } else {
+                session.enterLocalActiveMode();
+            }
+
+            if (!FtpSettings.isFastConnect()) {
+                session.ensureBinaryMode();
+            }
+
+            if (known == null) {
+                capabilities = discoverCapabilities(session);
+            }
+            metrics.recordHandshake(System.nanoTime() - started, session.getCommandCount() + 1);
+            return session;
+        } catch (IOException e) {
+            FtpSessionPool.closeQuietly(session);
+            throw e;
+        }
+    }
+
+    /**
+     * Asks FEAT and SYST once per server and remembers the answers in the
+     * {@link FtpCapabilityStore}, all sessions talk to the same server.
+     */
+    private FtpServerCapabilities discoverCapabilities(FtpSession session) throws IOException {
+        List<String> features = session.features()
+            ? Arrays.asList(session.getReplyStrings()) : Collections.emptyList();
+        String systemType;
+        try {
+            systemType = session.getSystemType();
+        } catch (IOException e) {
+            if (!session.isConnected()) {
+                throw e;
+            }
+            // SYST refused, the listing parser falls back to its default
+            systemType = null;
+        }
+
+        FtpServerCapabilities discovered = FtpServerCapabilities.of(systemType, features,
+            System.currentTimeMillis());
+        if (discovered.toClientConfig() != null) {
+            session.configure(discovered.toClientConfig());
+        }
+        FtpCapabilityStore.getDefault().put(connection.getHost(), connection.getPort(), discovered);
+        return discovered;
+    }
+
+    /**
+     * What the server announced, cached or asked on connect; {@code null}
+     * before the first connect.
+     */
+    public FtpServerCapabilities getServerCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Whether REST may work for stream transfers. Servers without FEAT are
+     * given the benefit of the doubt.
+     */
+    private boolean mayRestart() {
+        FtpServerCapabilities caps = capabilities;
+        return caps == null || caps.getFeatureLines().isEmpty() || caps.supportsRestStream();
+    }
+
     public void disconnect() {
         boolean wasConnected = connected;
 
-        if (ftpClient != null && ftpClient.isConnected()) {
-            try {
-                ftpClient.logout();
-                ftpClient.disconnect();
-            } catch (IOException e) {
-                // Ignore cleanup errors
-            }
+        FtpSessionPool pool = sessionPool;
+        sessionPool = null;
+        if (pool != null) {
+            pool.close();
+            saveListingsTask.schedule(0);
         }
         connected = false;
         connection.setConnected(false);
@@ -129,39 +384,571 @@ public class FtpClient {
     }
 
     public boolean isConnected() {
-        return connected && ftpClient != null && ftpClient.isConnected();
+        return connected && sessionPool != null;
     }
 
-    public List<FtpFile> listFiles(String path) throws IOException {
-        if (!isConnected()) {
+    /**
+     * Borrows a pooled session for the duration of {@code callback}. Sessions
+     * which fail with an {@link IOException} are dropped instead of being
+     * reused, because their control stream may be out of sync. A failure of a
+     * cancelled {@link FtpIoExecutor} operation is reported as an
+     * {@link InterruptedIOException}, whatever the interrupt did to the socket.
+     */
+    <T> T withSession(SessionCallback<T> callback) throws IOException {
+        FtpSessionPool pool = getSessionPool();
+        return withSession(pool, pool.borrow(), callback);
+    }
+
+    /**
+     * The pool of the current connection, for borrowing sessions with
+     * {@link FtpSessionPool#tryBorrow}.
+     */
+    FtpSessionPool getSessionPool() throws IOException {
+        FtpSessionPool pool = sessionPool;
+        if (!connected || pool == null) {
             throw new IOException("Not connected to FTP server");
         }
+        return pool;
+    }
+
+    /**
+     * Like {@link #withSession(SessionCallback)}, for a session already
+     * borrowed from {@code pool}. The session goes back to the pool, or is
+     * dropped, when {@code callback} returns.
+     */
+    <T> T withSession(FtpSessionPool pool, FtpSession session, SessionCallback<T> callback) throws IOException {
+        try {
+            T result = callback.run(session);
+            pool.release(session);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            pool.invalidate(session);
+            if (FtpIoExecutor.isCurrentCancelled() && !(e instanceof InterruptedIOException)) {
+                InterruptedIOException cancelled = new InterruptedIOException("Operation cancelled");
+                cancelled.initCause(e);
+                throw cancelled;
+            }
+            if (!(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException) {
+                metrics.recordFailure();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #withSession}, but when the control connection turns out to
+     * be dead, retries on a fresh session after an exponential backoff with
+     * jitter, up to {@link FtpSettings#getConnectionRetries()} times. Only for
+     * operations that can safely run twice.
+     *
+     * @param retryable asked before each retry, e.g. whether nothing was
+     *                  handed to a consumer yet
+     */
+    <T> T withRetry(SessionCallback<T> callback, BooleanSupplier retryable) throws IOException {
+        int retries = FtpSettings.getConnectionRetries();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return withSession(callback);
+            } catch (IOException e) {
+                FtpSessionPool pool = sessionPool;
+                if (attempt >= retries || !isConnectionFailure(e) || pool == null || !retryable.getAsBoolean()) {
+                    throw e;
+                }
+                // The server dropped one idle session, most likely all of them
+                pool.closeIdle();
+                try {
+                    Thread.sleep(FtpSessionPool.backoffDelay(attempt));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reconnecting");
+                }
+            }
+        }
+    }
+
+    <T> T withRetry(SessionCallback<T> callback) throws IOException {
+        return withRetry(callback, () -> true);
+    }
+
+    /**
+     * Whether {@code e} means the control connection is gone, rather than the
+     * server refusing something or the user cancelling.
+     */
+    static boolean isConnectionFailure(IOException e) {
+        return e instanceof FTPConnectionClosedException
+            || e instanceof SocketException
+            || e instanceof SocketTimeoutException
+            || e instanceof EOFException;
+    }
+
+    public int getOpenSessionCount() {
+        FtpSessionPool pool = sessionPool;
+        return pool != null ? pool.getOpenCount() : 0;
+    }
+
+    public int getIdleSessionCount() {
+        FtpSessionPool pool = sessionPool;
+        return pool != null ? pool.getIdleCount() : 0;
+    }
 
-        if (path == null || path.isEmpty()) {
-            path = "/";
+    public List<FtpFile> listFiles(String path) throws IOException {
+        List<FtpFile> result = new ArrayList<>();
+        listFiles(path, LISTING_PAGE_SIZE, page -> {
+            result.addAll(page);
+            return true;
+        });
+        return result;
+    }
+
+    /**
+     * Streams the entries of {@code path} to {@code consumer} in pages of at
+     * most {@code pageSize} entries while the listing is still being received.
+     * The consumer runs on the calling thread and may return {@code false} to
+     * abandon the rest of the listing.
+     */
+    public void listFiles(String path, int pageSize, PageConsumer consumer) throws IOException {
+        String listPath = path == null || path.isEmpty() ? "/" : path;
+        FtpFlightRecorderEvents.List event = new FtpFlightRecorderEvents.List();
+        event.begin();
+
+        CompletableFuture<Void> prefetch = rootPrefetch;
+        if (prefetch != null && "/".equals(listPath)) {
+            try {
+                prefetch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Listing interrupted");
+            } catch (ExecutionException | CancellationException e) {
+                // Not cached then, listed below
+            }
         }
 
+        List<FtpFile> cached = listingCache.get(listPath);
+        if (cached != null) {
+            int entries = 0;
+            for (int from = 0; from < cached.size(); from += pageSize) {
+                List<FtpFile> page = new ArrayList<>(cached.subList(from, Math.min(cached.size(), from + pageSize)));
+                entries += page.size();
+                if (!consumer.accept(page)) {
+                    break;
+                }
+            }
+            commit(event, listPath, entries, true, FtpFlightRecorderEvents.SUCCESS);
+            return;
+        }
+
+        List<FtpFile> loaded = new ArrayList<>();
+        boolean[] complete = {true};
+        long started = System.nanoTime();
         try {
-            FTPFile[] files = ftpClient.listFiles(path);
-            List<FtpFile> result = new ArrayList<>();
+            withRetry(session -> {
+                streamFiles(session, listPath, pageSize, page -> {
+                    loaded.addAll(page);
+                    boolean more = consumer.accept(page);
+                    complete[0] = more;
+                    return more;
+                });
+                return null;
+            }, loaded::isEmpty);
+        } catch (IOException | RuntimeException e) {
+            commit(event, listPath, loaded.size(), false, FtpFlightRecorderEvents.outcomeOf(e));
+            throw e;
+        }
+        commit(event, listPath, loaded.size(), false,
+            complete[0] ? FtpFlightRecorderEvents.SUCCESS : FtpFlightRecorderEvents.CANCELLED);
+
+        if (complete[0]) {
+            metrics.recordLatency(FtpMetrics.LISTING, System.nanoTime() - started);
+            listingCache.put(listPath, loaded);
+            saveListingsTask.schedule(SAVE_LISTINGS_DELAY);
+        }
+    }
+
+    private void commit(FtpFlightRecorderEvents.List event, String path, int entries, boolean cached,
+        String outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.connectionId = connection.getId();
+            event.path = path;
+            event.entries = entries;
+            event.cached = cached;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the last listing seen for {@code path}, possibly from a previous
+     * session and possibly outdated, or {@code null}. Never touches the network.
+     */
+    public List<FtpFile> getLastKnownListing(String path) {
+        return listingCache.getLastKnown(path);
+    }
+
+    /**
+     * Drops the cached listing of {@code directoryPath} so the next listing
+     * goes to the server. Call after modifying the directory.
+     */
+    public void invalidateListing(String directoryPath) {
+        listingCache.invalidate(directoryPath);
+    }
 
-            for (FTPFile file : files) {
-                if (!file.getName().equals(".") && !file.getName().equals("..")) {
-                    result.add(new FtpFile(path, file));
+    public FtpListingCache getListingCache() {
+        return listingCache;
+    }
+
+    /**
+     * Whether the server announced MLST in its FEAT reply, which makes
+     * listings use MLSD/MLST instead of parsing LIST output.
+     */
+    public boolean isMachineListingSupported() {
+        FtpServerCapabilities caps = capabilities;
+        return caps != null && caps.supportsMachineListing();
+    }
+
+    /**
+     * Returns the entry for a single remote path, or {@code null} if it does not exist.
+     */
+    public FtpFile stat(String path) throws IOException {
+        String parentPath = parentOf(path);
+        String name = path.substring(path.lastIndexOf('/') + 1);
+
+        return withRetry(session -> {
+            if (isMachineListingSupported()) {
+                FTPFile file = session.mlistFile(path);
+                if (file != null) {
+                    file.setName(name);
+                    return new FtpFile(parentPath, file);
+                }
+                if (FTPReply.isPositiveCompletion(session.getReplyCode())) {
+                    return null;
                 }
             }
 
-            return result;
+            FtpFile[] match = new FtpFile[1];
+            streamFiles(session, parentPath, LISTING_PAGE_SIZE, page -> {
+                for (FtpFile file : page) {
+                    if (file.getName().equals(name)) {
+                        match[0] = file;
+                    }
+                }
+                return match[0] == null;
+            });
+            return match[0];
+        });
+    }
+
+    /**
+     * Streams {@code remotePath} into {@code target}, replacing it. Heap usage
+     * does not depend on the file size.
+     * <p>
+     * The transfer is recorded in the {@link FtpTransferJournal}. If an earlier
+     * download of the same file into {@code target} was interrupted and the
+     * remote SIZE and MDTM are unchanged, it continues with REST from where it
+     * stopped. The same happens when the connection drops during the download.
+     *
+     * @return {@code false} if the server refused the transfer
+     * @throws InterruptedIOException if the listener aborted the transfer
+     */
+    public boolean download(String remotePath, Path target, TransferListener listener) throws IOException {
+        return download(remotePath, target, null, null, listener);
+    }
+
+    /**
+     * Downloads a file of a listing like {@link #download(String, Path, TransferListener)},
+     * but identifies it in the journal by the size and modification time of
+     * the listing, which saves the SIZE and MDTM round trips. For downloading
+     * many files; a single stream, never segmented.
+     */
+    public boolean download(FtpFile file, Path target, TransferListener listener) throws IOException {
+        return download(file.getPath(), target, Long.toString(file.getSize()),
+            "listing:" + file.getLastModifiedMillis(), listener);
+    }
+
+    /**
+     * @param knownSize     identifies the file together with
+     *                      {@code knownModified}, {@code null} to ask the
+     *                      server with SIZE and MDTM
+     */
+    private boolean download(String remotePath, Path target, String knownSize, String knownModified,
+        TransferListener listener) throws IOException {
+        FtpTransferJournal journal = FtpTransferJournal.getDefault();
+
+        return withRetry(session -> {
+            String size = knownSize != null ? knownSize : session.getSize(remotePath);
+            String modified = knownSize != null ? knownModified : session.getModificationTime(remotePath);
+
+            FtpTransferJournal.Entry entry = journal.find(connection.getId(),
+                FtpTransferJournal.Direction.DOWNLOAD, remotePath, target);
+            long offset = 0;
+            if (entry != null && !entry.isSegmented() && entry.matches(size, modified) && mayRestart()
+                && Files.exists(target)) {
+                // The journal lags behind the file by up to a second, and a
+                // crash may have lost the end of the file instead
+                offset = Math.min(entry.getOffset(), Files.size(target));
+            } else {
+                entry = journal.begin(connection.getId(), FtpTransferJournal.Direction.DOWNLOAD,
+                    remotePath, target, size, modified);
+            }
+
+            session.setRestartOffset(offset);
+            InputStream in = session.retrieveFileStream(remotePath);
+            if (in == null && offset > 0) {
+                // REST refused, start over
+                offset = 0;
+                in = session.retrieveFileStream(remotePath);
+            }
+            if (in == null) {
+                journal.remove(entry);
+                return false;
+            }
+
+            FtpMetrics.TransferMeter meter = metrics.startTransfer(false);
+            try {
+                try (InputStream data = in;
+                    FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                    channel.position(offset);
+                    copy(data, Channels.newOutputStream(channel), offset, downloadLimiter, meter,
+                        journaled(journal, entry, listener));
+                } catch (InterruptedIOException e) {
+                    // A timeout is a dropped connection, not a cancelled transfer
+                    if (!(e instanceof SocketTimeoutException) && (listener == null || !listener.isResumable())) {
+                        journal.remove(entry);
+                    }
+                    throw e;
+                }
+
+                boolean completed = session.completePendingCommand();
+                journal.remove(entry);
+                meter.finish();
+                return completed;
+            } finally {
+                meter.abort();
+            }
+        });
+    }
+
+    /**
+     * Streams {@code source} to {@code remotePath}, replacing it.
+     * <p>
+     * The transfer is recorded in the {@link FtpTransferJournal}. If an earlier
+     * upload of the unchanged {@code source} was interrupted, it continues after
+     * the bytes the server already has, using REST+STOR or, if the server does
+     * not accept REST for uploads, APPE.
+     *
+     * @return {@code false} if the server refused the transfer
+     * @throws InterruptedIOException if the listener aborted the transfer
+     */
+    public boolean upload(Path source, String remotePath, TransferListener listener) throws IOException {
+        FtpTransferJournal journal = FtpTransferJournal.getDefault();
+        String localSize = Long.toString(Files.size(source));
+        String localModified = Long.toString(Files.getLastModifiedTime(source).toMillis());
+
+        return withSession(session -> {
+            FtpTransferJournal.Entry entry = journal.find(connection.getId(),
+                FtpTransferJournal.Direction.UPLOAD, remotePath, source);
+            long offset = 0;
+            if (entry != null && entry.matches(localSize, localModified)) {
+                long remoteSize = parseSize(session.getSize(remotePath));
+                if (remoteSize > 0 && remoteSize <= Long.parseLong(localSize)) {
+                    offset = remoteSize;
+                }
+            } else {
+                entry = journal.begin(connection.getId(), FtpTransferJournal.Direction.UPLOAD,
+                    remotePath, source, localSize, localModified);
+            }
+
+            OutputStream out = null;
+            if (offset > 0) {
+                if (mayRestart()) {
+                    session.setRestartOffset(offset);
+                    out = session.storeFileStream(remotePath);
+                }
+                if (out == null) {
+                    out = session.appendFileStream(remotePath);
+                }
+                if (out == null) {
+                    offset = 0;
+                }
+            }
+            if (out == null) {
+                out = session.storeFileStream(remotePath);
+            }
+            if (out == null) {
+                journal.remove(entry);
+                return false;
+            }
+
+            FtpMetrics.TransferMeter meter = metrics.startTransfer(true);
+            try {
+                try (OutputStream data = out;
+                    FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                    channel.position(offset);
+                    copy(Channels.newInputStream(channel), data, offset, uploadLimiter, meter,
+                        journaled(journal, entry, listener));
+                } catch (InterruptedIOException e) {
+                    // A timeout is a dropped connection, not a cancelled transfer
+                    if (!(e instanceof SocketTimeoutException) && (listener == null || !listener.isResumable())) {
+                        journal.remove(entry);
+                    }
+                    throw e;
+                }
+
+                boolean completed = session.completePendingCommand();
+                journal.remove(entry);
+                meter.finish();
+                return completed;
+            } finally {
+                meter.abort();
+            }
+        });
+    }
+
+    /**
+     * Continues the transfers of this connection that were interrupted by a
+     * dropped connection or an IDE restart.
+     */
+    private void resumeJournaledTransfers() {
+        FtpTransferJournal journal = FtpTransferJournal.getDefault();
+        FtpTransferQueue queue = FtpTransferQueue.getDefault();
+        for (FtpTransferJournal.Entry entry : journal.getEntries(connection.getId())) {
+            if (entry.getDirection() == FtpTransferJournal.Direction.DOWNLOAD) {
+                queue.submit(FtpTransfer.download(this, entry.getRemotePath(), entry.getLocalPath(), 0,
+                    FtpTransfer.Priority.BACKGROUND));
+            } else if (Files.exists(entry.getLocalPath())) {
+                String remotePath = entry.getRemotePath();
+                queue.submit(FtpTransfer.upload(this, entry.getLocalPath(), remotePath,
+                    FtpTransfer.Priority.BACKGROUND)).getResult()
+                    .thenAccept(uploaded -> invalidateListing(parentOf(remotePath)));
+            } else {
+                journal.remove(entry);
+            }
+        }
+    }
+
+    private static TransferListener journaled(FtpTransferJournal journal, FtpTransferJournal.Entry entry,
+        TransferListener listener) {
+        return bytes -> {
+            journal.progress(entry, bytes);
+            return listener == null || listener.transferred(bytes);
+        };
+    }
+
+    /**
+     * Downloads {@code remotePath} like {@link #download(String, Path, TransferListener)},
+     * but splits files of at least {@link FtpSettings#getSegmentedDownloadMinSize()}
+     * bytes into segments fetched over several pooled sessions. Falls back to a
+     * single stream if the server does not report the size or rejects REST,
+     * or if fewer than two sessions are free besides one kept for browsing.
+     * An interrupted segmented download is continued segment by segment,
+     * whatever the size.
+     *
+     * @param expectedSize size from the listing, used to decide whether
+     *                     segmenting is worth a SIZE round trip
+     */
+    public boolean download(String remotePath, Path target, long expectedSize, TransferListener listener)
+        throws IOException {
+        FtpTransferJournal.Entry journaled = FtpTransferJournal.getDefault().find(connection.getId(),
+            FtpTransferJournal.Direction.DOWNLOAD, remotePath, target);
+        // One session stays free for browsing, as for folder downloads
+        int segments = Math.min(FtpSettings.getDownloadSegments(), connection.getMaxSessions() - 1);
+        boolean segment = segments > 1 && expectedSize >= FtpSettings.getSegmentedDownloadMinSize();
+        if ((segment || (journaled != null && journaled.isSegmented())) && mayRestart()) {
+            String[] identity = withRetry(session -> new String[]{
+                session.getSize(remotePath), session.getModificationTime(remotePath)});
+            long size = parseSize(identity[0]);
+            if (size > 0) {
+                SegmentedDownload segmented = new SegmentedDownload(this, remotePath, size, identity[0],
+                    identity[1], listener);
+                if (segmented.run(target, segment ? segments : 1)) {
+                    return true;
+                }
+                if (listener != null && segmented.getTransferred() > 0) {
+                    // The single stream below counts from zero again
+                    listener.restarted();
+                }
+            }
+        }
+        return download(remotePath, target, listener);
+    }
+
+    private static long parseSize(String reply) {
+        if (reply == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(reply.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static byte[] transferBuffer() {
+        return TRANSFER_BUFFER.get();
+    }
+
+    /**
+     * @param start number of bytes transferred before, included in the totals
+     *              passed to {@code listener}
+     * @param limiter charged for every buffer, blocks while the rate is exceeded
+     * @param meter  counts the bytes for the {@link FtpMetrics}
+     */
+    private static void copy(InputStream in, OutputStream out, long start, BandwidthLimiter limiter,
+        CopyStreamListener meter, TransferListener listener) throws IOException {
+        byte[] buffer = TRANSFER_BUFFER.get();
+        long total = start;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Transfer interrupted");
+            }
+            limiter.acquire(read);
+            out.write(buffer, 0, read);
+            total += read;
+            meter.bytesTransferred(total, read, CopyStreamEvent.UNKNOWN_STREAM_SIZE);
+            if (listener != null && !listener.transferred(total)) {
+                // The data connection is still open, so withSession drops the session
+                throw new InterruptedIOException("Transfer cancelled");
+            }
+        }
+    }
+
+    private void streamFiles(FtpSession session, String path, int pageSize, PageConsumer consumer)
+        throws IOException {
+
+        FtpSession.PageHandler handler = page -> consumer.accept(toFtpFiles(path, page));
+
+        if (isMachineListingSupported() && session.streamListing(path, true, pageSize, handler)) {
+            return;
+        }
+        // Either MLST is missing or MLSD was refused for this path
+
+        try {
+            if (!session.streamListing(path, false, pageSize, handler)) {
+                // Not an empty directory: caching this would hide e.g. a permission problem
+                throw new IOException("The server refused to list " + path + ": " + session.getReplyString().trim());
+            }
         } catch (org.apache.commons.net.ftp.parser.ParserInitializationException e) {
             // Fallback: Use simple file listing for unknown server types like Win32NT
-            return listFilesSimple(path);
+            consumer.accept(listFilesSimple(session, path));
         }
     }
 
-    private List<FtpFile> listFilesSimple(String path) throws IOException {
+    private static List<FtpFile> toFtpFiles(String path, List<FTPFile> files) {
+        List<FtpFile> result = new ArrayList<>(files.size());
+        for (FTPFile file : files) {
+            if (!isSelfOrParentEntry(file)) {
+                result.add(new FtpFile(path, file));
+            }
+        }
+        return result;
+    }
+
+    private List<FtpFile> listFilesSimple(FTPClient session, String path) throws IOException {
         try {
             // Use listNames() as fallback - this gives us just file names
-            String[] fileNames = ftpClient.listNames(path);
+            String[] fileNames = session.listNames(path);
             if (fileNames == null) {
                 return new ArrayList<>();
             }
@@ -188,20 +975,138 @@ public class FtpClient {
         }
     }
 
-    public boolean changeDirectory(String path) throws IOException {
-        if (!isConnected()) {
-            throw new IOException("Not connected to FTP server");
+    private static boolean isSelfOrParentEntry(FTPFile file) {
+        String name = file.getName();
+        if (name == null || name.equals(".") || name.equals("..")) {
+            return true;
+        }
+        String raw = file.getRawListing();
+        if (raw == null) {
+            return false;
         }
+        String facts = raw.toLowerCase(Locale.ROOT);
+        return facts.startsWith("type=cdir;") || facts.contains(";type=cdir;")
+            || facts.startsWith("type=pdir;") || facts.contains(";type=pdir;");
+    }
 
-        return ftpClient.changeWorkingDirectory(path);
+    static String parentOf(String path) {
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash <= 0 ? "/" : path.substring(0, lastSlash);
+    }
+
+    public boolean changeDirectory(String path) throws IOException {
+        return withRetry(session -> session.changeWorkingDirectory(path));
     }
 
     public String getCurrentDirectory() throws IOException {
-        if (!isConnected()) {
-            throw new IOException("Not connected to FTP server");
+        return withRetry(FTPClient::printWorkingDirectory);
+    }
+
+    /**
+     * Deletes a file, or an empty directory.
+     *
+     * @return {@code false} if the server refused
+     */
+    public boolean delete(String path, boolean directory) throws IOException {
+        boolean deleted = withSession(session -> directory ? session.removeDirectory(path) : session.deleteFile(path));
+        if (deleted) {
+            invalidateListing(parentOf(path));
+        }
+        return deleted;
+    }
+
+    /**
+     * @return {@code false} if the server refused, e.g. because it exists
+     */
+    public boolean createDirectory(String path) throws IOException {
+        boolean created = withSession(session -> session.makeDirectory(path));
+        if (created) {
+            invalidateListing(parentOf(path));
+        }
+        return created;
+    }
+
+    /**
+     * Renames or moves {@code from} to {@code to}.
+     *
+     * @return {@code false} if the server refused
+     */
+    public boolean rename(String from, String to) throws IOException {
+        boolean renamed = withSession(session -> session.rename(from, to));
+        if (renamed) {
+            invalidateListing(parentOf(from));
+            invalidateListing(parentOf(to));
+            invalidateListing(from);
         }
+        return renamed;
+    }
+
+    // Asynchronous variants of the operations above. They run on the
+    // FtpIoExecutor, transfers through the FtpTransferQueue; cancelling the
+    // returned future, or letting its orTimeout expire, stops the operation.
+    // Futures derived from them with thenApply and friends do not pass a
+    // cancel back upstream.
+
+    public CompletableFuture<Boolean> connectAsync() {
+        return async("Connect " + connection.getDisplayName(), this::connect);
+    }
 
-        return ftpClient.printWorkingDirectory();
+    public CompletableFuture<List<FtpFile>> listFilesAsync(String path) {
+        return async("List " + path, () -> listFiles(path));
+    }
+
+    /**
+     * Completes with {@code null} if {@code path} does not exist.
+     */
+    public CompletableFuture<FtpFile> statAsync(String path) {
+        return async("Stat " + path, () -> stat(path));
+    }
+
+    /**
+     * Queues an interactive download, shown in the Transfers window.
+     */
+    public CompletableFuture<Boolean> downloadAsync(String remotePath, Path target, long expectedSize,
+        TransferListener listener) {
+        return queued(FtpTransfer.download(this, remotePath, target, expectedSize, FtpTransfer.Priority.INTERACTIVE),
+            listener);
+    }
+
+    /**
+     * Queues an interactive upload, shown in the Transfers window.
+     */
+    public CompletableFuture<Boolean> uploadAsync(Path source, String remotePath, TransferListener listener) {
+        return queued(FtpTransfer.upload(this, source, remotePath, FtpTransfer.Priority.INTERACTIVE), listener);
+    }
+
+    public CompletableFuture<Boolean> deleteAsync(String path, boolean directory) {
+        return async("Delete " + path, () -> delete(path, directory));
+    }
+
+    public CompletableFuture<Boolean> renameAsync(String from, String to) {
+        return async("Rename " + from, () -> rename(from, to));
+    }
+
+    private static <T> CompletableFuture<T> async(String name, FtpIoExecutor.IoTask<T> task) {
+        return FtpIoExecutor.getDefault().submit(name, task).getResult();
+    }
+
+    /**
+     * Submits {@code transfer} and returns a copy of its result, so callers
+     * cannot complete the transfer's own future while the queue still runs it.
+     * Cancelling the copy, timing it out or completing it cancels the transfer.
+     */
+    private static CompletableFuture<Boolean> queued(FtpTransfer transfer, TransferListener listener) {
+        transfer.setProgressListener(listener);
+        CompletableFuture<Boolean> result = transfer.getResult();
+        CompletableFuture<Boolean> copy = result.copy();
+        copy.whenComplete((completed, error) -> {
+            // Completed by the caller rather than the queue
+            if (!result.isDone()) {
+                FtpTransferQueue.getDefault().cancel(transfer);
+            }
+        });
+        FtpTransferQueue.getDefault().submit(transfer);
+        return copy;
     }
 
     public FtpConnection getConnection() {
@@ -44,7 +44,8 @@ public class FtpClientRootNode extends AbstractNode {
     @Override
     public Action[] getActions(boolean context) {
         return new Action[]{
-            new AddConnectionAction()
+            new AddConnectionAction(),
+            new ShowTransfersAction()
         };
     }
 
@@ -85,6 +86,18 @@ public class FtpClientRootNode extends AbstractNode {
         }
     }
 
+    private static class ShowTransfersAction extends AbstractAction {
+
+        public ShowTransfersAction() {
+            putValue(NAME, "Show Transfers");
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            FtpTransfersTopComponent.openWindow();
+        }
+    }
+
     private static class AddConnectionAction extends AbstractAction {
 
         public AddConnectionAction() {
@@ -0,0 +1,133 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The {@link FtpClientStatsMBean} of one {@link FtpClient}.
+ */
+final class FtpClientStats implements FtpClientStatsMBean {
+
+    private final FtpClient client;
+    private ObjectName objectName;
+
+    private FtpClientStats(FtpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Registers the MBean of {@code client}; failures are logged, JMX is not
+     * essential.
+     */
+    static FtpClientStats register(FtpClient client) {
+        FtpClientStats stats = new FtpClientStats(client);
+        try {
+            ObjectName name = new ObjectName("io.github.chris2011.ftp:type=FtpClient,id="
+                + ObjectName.quote(client.getConnection().getId()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(stats, name);
+            stats.objectName = name;
+        } catch (JMException | RuntimeException e) {
+            System.err.println("Failed to register FTP client MBean: " + e.getMessage());
+        }
+        return stats;
+    }
+
+    void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            System.err.println("Failed to unregister FTP client MBean: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String getConnectionName() {
+        return client.getConnection().getDisplayName();
+    }
+
+    @Override
+    public String getHost() {
+        return client.getConnection().getHost() + ":" + client.getConnection().getPort();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public int getOpenSessions() {
+        return client.getOpenSessionCount();
+    }
+
+    @Override
+    public int getIdleSessions() {
+        return client.getIdleSessionCount();
+    }
+
+    @Override
+    public long getCommandsSent() {
+        return client.getMetrics().getCommandsSent();
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return client.getMetrics().getBytesDownloaded();
+    }
+
+    @Override
+    public long getBytesUploaded() {
+        return client.getMetrics().getBytesUploaded();
+    }
+
+    @Override
+    public double getAverageListLatencyMillis() {
+        return client.getMetrics().getCommandStats(FtpMetrics.LISTING).getMeanMillis();
+    }
+
+    @Override
+    public double getP99ListLatencyMillis() {
+        return client.getMetrics().getCommandStats(FtpMetrics.LISTING).getP99Millis();
+    }
+
+    @Override
+    public double getListingCacheHitRatio() {
+        return client.getListingCache().getHitRatio();
+    }
+
+    @Override
+    public double getLastHandshakeMillis() {
+        return client.getMetrics().getLastHandshakeMillis();
+    }
+
+    @Override
+    public int getLastHandshakeRoundTrips() {
+        return client.getMetrics().getLastHandshakeRoundTrips();
+    }
+
+    @Override
+    public long getFailedOperations() {
+        return client.getMetrics().getFailedOperations();
+    }
+
+    @Override
+    public void reset() {
+        client.getMetrics().reset();
+        client.getListingCache().resetStatistics();
+    }
+
+    @Override
+    public void disconnect() {
+        client.disconnect();
+    }
+}
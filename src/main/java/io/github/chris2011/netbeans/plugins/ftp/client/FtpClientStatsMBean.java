@@ -0,0 +1,44 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+/**
+ * JMX view of one {@link FtpClient}, registered as
+ * {@code io.github.chris2011.ftp:type=FtpClient,id=<connection id>} so
+ * VisualVM or JConsole can watch it without a profiler.
+ */
+public interface FtpClientStatsMBean {
+
+    String getConnectionName();
+
+    String getHost();
+
+    boolean isConnected();
+
+    int getOpenSessions();
+
+    int getIdleSessions();
+
+    long getCommandsSent();
+
+    long getBytesDownloaded();
+
+    long getBytesUploaded();
+
+    double getAverageListLatencyMillis();
+
+    double getP99ListLatencyMillis();
+
+    double getListingCacheHitRatio();
+
+    double getLastHandshakeMillis();
+
+    int getLastHandshakeRoundTrips();
+
+    long getFailedOperations();
+
+    /**
+     * Clears the counters, latencies and cache statistics.
+     */
+    void reset();
+
+    void disconnect();
+}
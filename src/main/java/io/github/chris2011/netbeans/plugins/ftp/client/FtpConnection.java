@@ -14,6 +14,8 @@ public class FtpConnection implements Serializable {
 
     public static final String PROP_CONNECTED = "connected";
 
+    public static final int DEFAULT_MAX_SESSIONS = 4;
+
     private final String id;
 
     private String name;
@@ -22,6 +24,9 @@ public class FtpConnection implements Serializable {
     private String username;
     private String password;
     private boolean passiveMode;
+    private int maxSessions;
+    private int maxDownloadRate;
+    private int maxUploadRate;
 
     private transient PropertyChangeSupport pcs = new PropertyChangeSupport(this);
     private volatile boolean connected;
@@ -57,6 +62,9 @@ public class FtpConnection implements Serializable {
             this.username = template.getUsername();
             this.password = template.getPassword();
             this.passiveMode = template.isPassiveMode();
+            this.maxSessions = template.getMaxSessions();
+            this.maxDownloadRate = template.getMaxDownloadRate();
+            this.maxUploadRate = template.getMaxUploadRate();
         }
     }
 
@@ -64,6 +72,7 @@ public class FtpConnection implements Serializable {
         this.id = id != null ? id : UUID.randomUUID().toString();
         this.port = 21;
         this.passiveMode = true;
+        this.maxSessions = DEFAULT_MAX_SESSIONS;
         this.connected = false;
     }
 
@@ -119,6 +128,39 @@ public class FtpConnection implements Serializable {
         this.passiveMode = passiveMode;
     }
 
+    /**
+     * Upper bound of simultaneously open control connections to the server.
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = Math.max(1, maxSessions);
+    }
+
+    /**
+     * Download cap in KB/s for this connection, 0 for unlimited.
+     */
+    public int getMaxDownloadRate() {
+        return maxDownloadRate;
+    }
+
+    public void setMaxDownloadRate(int maxDownloadRate) {
+        this.maxDownloadRate = Math.max(0, maxDownloadRate);
+    }
+
+    /**
+     * Upload cap in KB/s for this connection, 0 for unlimited.
+     */
+    public int getMaxUploadRate() {
+        return maxUploadRate;
+    }
+
+    public void setMaxUploadRate(int maxUploadRate) {
+        this.maxUploadRate = Math.max(0, maxUploadRate);
+    }
+
     public boolean isConnected() {
         return connected;
     }
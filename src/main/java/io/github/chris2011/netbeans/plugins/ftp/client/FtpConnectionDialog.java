@@ -49,6 +49,9 @@ public class FtpConnectionDialog extends JDialog {
     private JCheckBox anonymousLoginCheckBox;
     private JCheckBox savePasswordCheckBox;
     private JCheckBox passiveModeCheckBox;
+    private JSpinner maxSessionsSpinner;
+    private JSpinner maxDownloadRateSpinner;
+    private JSpinner maxUploadRateSpinner;
 
     // Advanced options panel
     private JPanel advancedPanel;
@@ -320,6 +323,34 @@ public class FtpConnectionDialog extends JDialog {
         nameField = new JTextField();
         nameField.setPreferredSize(new Dimension(350, 25));
         advancedPanel.add(nameField, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 3;
+        gbc.fill = GridBagConstraints.NONE; gbc.weightx = 0.0;
+        gbc.insets = new Insets(8, 0, 4, 0);
+        advancedPanel.add(new JLabel("Maximale Sitzungen:"), gbc);
+
+        gbc.gridx = 0; gbc.gridy = 4;
+        gbc.insets = new Insets(0, 0, 0, 0);
+        maxSessionsSpinner = new JSpinner(new SpinnerNumberModel(FtpConnection.DEFAULT_MAX_SESSIONS, 1, 16, 1));
+        advancedPanel.add(maxSessionsSpinner, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 5;
+        gbc.insets = new Insets(8, 0, 4, 0);
+        advancedPanel.add(new JLabel("Max. Download (KB/s, 0 = unbegrenzt):"), gbc);
+
+        gbc.gridx = 0; gbc.gridy = 6;
+        gbc.insets = new Insets(0, 0, 0, 0);
+        maxDownloadRateSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 64));
+        advancedPanel.add(maxDownloadRateSpinner, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 7;
+        gbc.insets = new Insets(8, 0, 4, 0);
+        advancedPanel.add(new JLabel("Max. Upload (KB/s, 0 = unbegrenzt):"), gbc);
+
+        gbc.gridx = 0; gbc.gridy = 8;
+        gbc.insets = new Insets(0, 0, 0, 0);
+        maxUploadRateSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 64));
+        advancedPanel.add(maxUploadRateSpinner, gbc);
     }
 
     private void toggleAdvancedOptions() {
@@ -456,6 +487,9 @@ public class FtpConnectionDialog extends JDialog {
         if (usernameField != null) usernameField.setText(connection.getUsername());
         if (passwordField != null) passwordField.setText(connection.getPassword());
         if (passiveModeCheckBox != null) passiveModeCheckBox.setSelected(connection.isPassiveMode());
+        if (maxSessionsSpinner != null) maxSessionsSpinner.setValue(connection.getMaxSessions());
+        if (maxDownloadRateSpinner != null) maxDownloadRateSpinner.setValue(connection.getMaxDownloadRate());
+        if (maxUploadRateSpinner != null) maxUploadRateSpinner.setValue(connection.getMaxUploadRate());
         if (savePasswordCheckBox != null) savePasswordCheckBox.setSelected(true);
 
         // Update URL field if available
@@ -503,6 +537,15 @@ public class FtpConnectionDialog extends JDialog {
         conn.setUsername(usernameField.getText().trim());
         conn.setPassword(new String(passwordField.getPassword()));
         conn.setPassiveMode(passiveModeCheckBox != null ? passiveModeCheckBox.isSelected() : true);
+        if (maxSessionsSpinner != null) {
+            conn.setMaxSessions((Integer) maxSessionsSpinner.getValue());
+        }
+        if (maxDownloadRateSpinner != null) {
+            conn.setMaxDownloadRate((Integer) maxDownloadRateSpinner.getValue());
+        }
+        if (maxUploadRateSpinner != null) {
+            conn.setMaxUploadRate((Integer) maxUploadRateSpinner.getValue());
+        }
 
         return conn;
     }
@@ -25,6 +25,7 @@ public class FtpConnectionManager {
     private static FtpConnectionManager instance;
     private final List<FtpConnection> connections;
     private final PropertyChangeSupport pcs;
+    private final Path configDir;
     private final Path configFile;
 
     private FtpConnectionManager() {
@@ -34,7 +35,7 @@ public class FtpConnectionManager {
 
         // Create config directory in user home/.netbeans/ftp-client/
         String userHome = System.getProperty("user.home");
-        Path configDir = Paths.get(userHome, ".netbeans", "ftp-client");
+        this.configDir = Paths.get(userHome, ".netbeans", "ftp-client");
         this.configFile = configDir.resolve("connections.json");
         System.out.println("FtpConnectionManager: Config file path: " + configFile);
 
@@ -55,6 +56,13 @@ public class FtpConnectionManager {
         return instance;
     }
 
+    /**
+     * Directory holding connections.json and the other files this module persists.
+     */
+    public Path getConfigDirectory() {
+        return configDir;
+    }
+
     public void addConnection(FtpConnection connection) {
         connection.setConnected(false);
         connections.add(connection);
@@ -178,7 +186,10 @@ public class FtpConnectionManager {
             json.append("    \"passwordHash\": \"").append(passwordHash).append("\",\n");
             json.append("    \"salt\": \"").append(salt).append("\",\n");
 
-            json.append("    \"passiveMode\": ").append(conn.isPassiveMode()).append("\n");
+            json.append("    \"passiveMode\": ").append(conn.isPassiveMode()).append(",\n");
+            json.append("    \"maxSessions\": ").append(conn.getMaxSessions()).append(",\n");
+            json.append("    \"maxDownloadRate\": ").append(conn.getMaxDownloadRate()).append(",\n");
+            json.append("    \"maxUploadRate\": ").append(conn.getMaxUploadRate()).append("\n");
             json.append("  }");
         }
 
@@ -200,11 +211,23 @@ public class FtpConnectionManager {
                     String passwordHash = extractJsonValue(part, "passwordHash");
                     String salt = extractJsonValue(part, "salt");
                     boolean passiveMode = Boolean.parseBoolean(extractJsonValue(part, "passiveMode"));
+                    String maxSessions = extractJsonValue(part, "maxSessions");
+                    String maxDownloadRate = extractJsonValue(part, "maxDownloadRate");
+                    String maxUploadRate = extractJsonValue(part, "maxUploadRate");
 
                     if (!host.isEmpty() && !username.isEmpty()) {
                         // Create connection without password - will be set when user connects
                         FtpConnection conn = new FtpConnection(id, name, host, port, username, "");
                         conn.setPassiveMode(passiveMode);
+                        if (!maxSessions.isEmpty()) {
+                            conn.setMaxSessions(Integer.parseInt(maxSessions));
+                        }
+                        if (!maxDownloadRate.isEmpty()) {
+                            conn.setMaxDownloadRate(Integer.parseInt(maxDownloadRate));
+                        }
+                        if (!maxUploadRate.isEmpty()) {
+                            conn.setMaxUploadRate(Integer.parseInt(maxUploadRate));
+                        }
                         conn.setConnected(false);
 
                         // Store hash and salt for later verification
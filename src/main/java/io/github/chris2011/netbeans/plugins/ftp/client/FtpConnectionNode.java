@@ -44,6 +44,7 @@ public class FtpConnectionNode extends AbstractNode {
                 openExplorerAction,
                 new DisconnectAction(),
                 null,
+                new ShowStatisticsAction(),
                 new EditConnectionAction(),
                 new RemoveConnectionAction()
             };
@@ -51,6 +52,7 @@ public class FtpConnectionNode extends AbstractNode {
             return new Action[]{
                 connectAndOpenAction,
                 null,
+                new ShowStatisticsAction(),
                 new EditConnectionAction(),
                 new RemoveConnectionAction()
             };
@@ -168,16 +170,14 @@ public class FtpConnectionNode extends AbstractNode {
 
             // Always connect via singleton - events will handle UI updates in all open windows
             FtpClient client = FtpClient.getInstance(connection);
-            SwingUtilities.invokeLater(() -> {
-                try {
-                    client.connect();
-                } catch (Exception ex) {
+            client.connectAsync().whenCompleteAsync((connected, error) -> {
+                if (error != null) {
                     JOptionPane.showMessageDialog(null,
-                        "Connection failed: " + ex.getMessage(),
+                        "Connection failed: " + error.getMessage(),
                         "Connection Error",
                         JOptionPane.ERROR_MESSAGE);
                 }
-            });
+            }, SwingUtilities::invokeLater);
         }
     }
 
@@ -214,10 +214,26 @@ public class FtpConnectionNode extends AbstractNode {
             connection.setUsername(updatedConnection.getUsername());
             connection.setPassword(updatedConnection.getPassword());
             connection.setPassiveMode(updatedConnection.isPassiveMode());
+            connection.setMaxSessions(updatedConnection.getMaxSessions());
+            connection.setMaxDownloadRate(updatedConnection.getMaxDownloadRate());
+            connection.setMaxUploadRate(updatedConnection.getMaxUploadRate());
+            ftpClient.applyLimits();
         }
 
     }
 
+    private class ShowStatisticsAction extends AbstractAction {
+
+        public ShowStatisticsAction() {
+            putValue(NAME, "Statistics...");
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            FtpMetricsPanel.show(ftpClient);
+        }
+    }
+
     private class DisconnectAction extends AbstractAction {
 
         public DisconnectAction() {
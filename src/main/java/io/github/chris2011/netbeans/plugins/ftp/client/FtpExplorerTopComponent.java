@@ -20,7 +20,6 @@ import org.openide.awt.NotificationDisplayer;
 import org.openide.awt.StatusDisplayer;
 import org.openide.explorer.ExplorerManager;
 import org.openide.explorer.ExplorerUtils;
-import org.openide.util.RequestProcessor;
 import org.openide.windows.TopComponent;
 import org.openide.windows.WindowManager;
 
@@ -29,8 +28,6 @@ public class FtpExplorerTopComponent extends TopComponent implements ExplorerMan
     private static final String MILLER_VIEW = "miller";
     private static final String TREE_VIEW = "tree";
 
-    private static final RequestProcessor RP = new RequestProcessor(FtpExplorerTopComponent.class);
-
     private final FtpConnection connection;
     private FtpClient ftpClient;
 
@@ -56,6 +53,9 @@ public class FtpExplorerTopComponent extends TopComponent implements ExplorerMan
         setDisplayName("FTP: " + connection.getDisplayName());
         setToolTipText("FTP Explorer for " + connection.getDisplayName());
 
+        // Resolve common file icons while we are still connecting
+        FtpIcons.prewarm();
+
         initComponents();
         associateLookup(ExplorerUtils.createLookup(explorerManager, getActionMap()));
         updateWindowMetadata();
@@ -87,14 +87,9 @@ public class FtpExplorerTopComponent extends TopComponent implements ExplorerMan
         tc.open();
         tc.requestActive();
 
-        // Auto-connect when opening a new TopComponent
-        SwingUtilities.invokeLater(() -> {
-            try {
-                FtpClient.getInstance(connection).connect();
-            } catch (Exception e) {
-                // Connection will be handled by event system
-            }
-        });
+        // Auto-connect when opening a new TopComponent, off the EDT
+        // Failures are reported by the event system
+        FtpClient.getInstance(connection).connectAsync();
 
         return tc;
     }
@@ -133,6 +128,11 @@ public class FtpExplorerTopComponent extends TopComponent implements ExplorerMan
 
         toolbar.add(millerViewButton);
         toolbar.add(treeViewButton);
+        toolbar.addSeparator();
+
+        JButton transfersButton = new JButton("Transfers");
+        transfersButton.addActionListener(e -> FtpTransfersTopComponent.openWindow());
+        toolbar.add(transfersButton);
 
         add(toolbar, BorderLayout.NORTH);
 
@@ -162,19 +162,13 @@ public class FtpExplorerTopComponent extends TopComponent implements ExplorerMan
         handle.start();
         handle.switchToIndeterminate();
 
-        RP.post(() -> {
-            try {
-                ftpClient.connect(); // FtpClient will fire events automatically
-                SwingUtilities.invokeLater(() -> {
-                    handle.finish();
-                });
-            } catch (IOException ex) {
-                SwingUtilities.invokeLater(() -> {
-                    handle.finish();
-                    handleConnectionFailure("Connection failed: " + ex.getMessage());
-                });
+        // FtpClient fires the connected event itself
+        ftpClient.connectAsync().whenCompleteAsync((connected, error) -> {
+            handle.finish();
+            if (error != null) {
+                handleConnectionFailure("Connection failed: " + error.getMessage());
             }
-        });
+        }, SwingUtilities::invokeLater);
     }
 
     private void handleSuccessfulConnection() {
@@ -280,6 +274,14 @@ public class FtpExplorerTopComponent extends TopComponent implements ExplorerMan
         return ftpClient.listFiles(path);
     }
 
+    public void listFiles(String path, FtpClient.PageConsumer consumer) throws IOException {
+        ftpClient.listFiles(path, FtpClient.LISTING_PAGE_SIZE, consumer);
+    }
+
+    public List<FtpFile> getLastKnownListing(String path) {
+        return ftpClient.getLastKnownListing(path);
+    }
+
     public boolean isConnected() {
         return isConnected && ftpClient.isConnected();
     }
@@ -320,7 +322,10 @@ public class FtpExplorerTopComponent extends TopComponent implements ExplorerMan
                 updateWindowMetadata();
 
                 // Show notification
-                StatusDisplayer.getDefault().setStatusText("Connected to " + connection.getDisplayName());
+                FtpMetrics metrics = ftpClient.getMetrics();
+                StatusDisplayer.getDefault().setStatusText(String.format("Connected to %s in %.0f ms (%d round trips)",
+                    connection.getDisplayName(), metrics.getLastHandshakeMillis(),
+                    metrics.getLastHandshakeRoundTrips()));
                 NotificationDisplayer.getDefault().notify(
                     "FTP Connection",
                     FtpIcons.getNotificationIcon(),
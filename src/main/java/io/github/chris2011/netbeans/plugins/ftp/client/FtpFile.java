@@ -1,58 +1,90 @@
 package io.github.chris2011.netbeans.plugins.ftp.client;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Date;
+import java.util.Comparator;
 import org.apache.commons.net.ftp.FTPFile;
 
+/**
+ * One entry of a remote directory listing.
+ * <p>
+ * Listings can hold millions of entries, so the representation is kept
+ * compact: the path is stored as an interned parent directory plus the name,
+ * the modification time as epoch milliseconds, the permissions as a packed
+ * bit mask and owner and group as interned strings. The accessors rebuild the
+ * usual values on demand.
+ */
 public class FtpFile {
 
+    /**
+     * Directories before files, each group sorted by name ignoring case.
+     */
+    public static final Comparator<FtpFile> DIRECTORIES_FIRST = Comparator
+        .comparing(FtpFile::isDirectory).reversed()
+        .thenComparing(FtpFile::getName, String.CASE_INSENSITIVE_ORDER);
+
+    // Layout of the packed permissions: rwxrwxrwx in bits 0-8 (owner read is
+    // bit 8), the file type in bits 9-11 and setuid/setgid/sticky in bits 12-14.
+    private static final String TYPE_CHARS = "-dlbcps?";
+    private static final int TYPE_SHIFT = 9;
+    private static final int SPECIAL_SHIFT = 12;
+    private static final String[] PERMISSION_STRINGS = new String[1 << 15];
+    private static final short DEFAULT_DIRECTORY_PERMISSIONS = packPermissions("drwxr-xr-x");
+    private static final short DEFAULT_FILE_PERMISSIONS = packPermissions("-rw-r--r--");
+
     private final String name;
-    private final String path;
-    private final boolean isDirectory;
+    /** Interned path of the containing directory, {@code null} for the root. */
+    private final String parent;
     private final long size;
-    private final LocalDateTime lastModified;
-    private final String permissions;
-
+    private final long lastModified;
     private final String owner;
     private final String group;
-    private final boolean root;
+    private final short permissions;
+    private final boolean isDirectory;
 
     public FtpFile(String path, FTPFile ftpFile) {
         this(
             ftpFile.getName(),
-            path.endsWith("/") ? path + ftpFile.getName() : path + "/" + ftpFile.getName(),
+            path,
             ftpFile.isDirectory(),
             ftpFile.getSize(),
-            toLocalDateTime(ftpFile.getTimestamp() != null ? ftpFile.getTimestamp().getTime() : new Date()),
-            extractPermissions(ftpFile),
-            nullToEmpty(ftpFile.getUser()),
-            nullToEmpty(ftpFile.getGroup()),
-            false
+            ftpFile.getTimestamp() != null ? ftpFile.getTimestamp().getTimeInMillis() : System.currentTimeMillis(),
+            packPermissions(ftpFile),
+            ftpFile.getUser(),
+            ftpFile.getGroup()
         );
     }
 
     public FtpFile(String name, String path, boolean isDirectory) {
-        this(name, path, isDirectory, 0, LocalDateTime.now(),
-            isDirectory ? "drwxr-xr-x" : "-rw-r--r--", "", "", false);
+        this(name, parentOf(path), isDirectory, 0, System.currentTimeMillis(),
+            isDirectory ? DEFAULT_DIRECTORY_PERMISSIONS : DEFAULT_FILE_PERMISSIONS, "", "");
     }
 
-    private FtpFile(String name, String path, boolean isDirectory, long size,
-        LocalDateTime lastModified, String permissions, String owner, String group, boolean root) {
+    private FtpFile(String name, String parent, boolean isDirectory, long size,
+        long lastModified, short permissions, String owner, String group) {
         this.name = name;
-        this.path = path;
+        this.parent = parent != null ? normalizeParent(parent).intern() : null;
         this.isDirectory = isDirectory;
         this.size = size;
         this.lastModified = lastModified;
         this.permissions = permissions;
-        this.owner = owner;
-        this.group = group;
-        this.root = root;
+        this.owner = owner != null ? owner.intern() : "";
+        this.group = group != null ? group.intern() : "";
+    }
+
+    /**
+     * Recreates an entry of {@code parentPath} from its persisted attributes.
+     */
+    static FtpFile restore(String name, String parentPath, boolean isDirectory, long size,
+        long lastModified, String permissions, String owner, String group) {
+        return new FtpFile(name, parentPath, isDirectory, size, lastModified,
+            packPermissions(permissions), owner, group);
     }
 
     public static FtpFile createRoot(String displayName) {
-        return new FtpFile(displayName, "/", true, 0, LocalDateTime.now(),
-            "drwxr-xr-x", "", "", true);
+        return new FtpFile(displayName, null, true, 0, System.currentTimeMillis(),
+            DEFAULT_DIRECTORY_PERMISSIONS, "", "");
     }
 
     public String getName() {
@@ -60,7 +92,10 @@ public class FtpFile {
     }
 
     public String getPath() {
-        return path;
+        if (parent == null) {
+            return "/";
+        }
+        return parent.equals("/") ? "/" + name : parent + "/" + name;
     }
 
     public boolean isDirectory() {
@@ -76,42 +111,27 @@ public class FtpFile {
     }
 
     public LocalDateTime getLastModified() {
-        return lastModified;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneId.systemDefault());
     }
 
-    public String getPermissions() {
-        return permissions;
+    /**
+     * Modification time in milliseconds since the epoch.
+     */
+    public long getLastModifiedMillis() {
+        return lastModified;
     }
 
-    public String getPermissionsWithOctal() {
-        if (permissions.length() >= 10) {
-            String octal = convertPermissionsToOctal(permissions);
-            return permissions + " (" + octal + ")";
+    public String getPermissions() {
+        String formatted = PERMISSION_STRINGS[permissions];
+        if (formatted == null) {
+            formatted = formatPermissions(permissions);
+            PERMISSION_STRINGS[permissions] = formatted;
         }
-        return permissions;
+        return formatted;
     }
 
-    private String convertPermissionsToOctal(String perms) {
-        if (perms.length() < 10) return "";
-
-        // Skip first character (file type: d, -, l, etc.)
-        String userPerms = perms.substring(1, 4);   // rwx
-        String groupPerms = perms.substring(4, 7);  // rwx
-        String otherPerms = perms.substring(7, 10); // rwx
-
-        int userOctal = permStringToOctal(userPerms);
-        int groupOctal = permStringToOctal(groupPerms);
-        int otherOctal = permStringToOctal(otherPerms);
-
-        return String.format("%d%d%d", userOctal, groupOctal, otherOctal);
-    }
-
-    private int permStringToOctal(String perm) {
-        int value = 0;
-        if (perm.charAt(0) == 'r') value += 4; // read
-        if (perm.charAt(1) == 'w') value += 2; // write
-        if (perm.charAt(2) == 'x') value += 1; // execute
-        return value;
+    public String getPermissionsWithOctal() {
+        return getPermissions() + " (" + String.format("%03o", permissions & 0777) + ")";
     }
 
     public String getOwner() {
@@ -123,7 +143,7 @@ public class FtpFile {
     }
 
     public boolean isRoot() {
-        return root;
+        return parent == null;
     }
 
     public String getOwnerDisplay() {
@@ -140,14 +160,7 @@ public class FtpFile {
     }
 
     public String getParentPath() {
-        if (path.equals("/")) {
-            return null;
-        }
-        int lastSlash = path.lastIndexOf('/');
-        if (lastSlash <= 0) {
-            return "/";
-        }
-        return path.substring(0, lastSlash);
+        return parent;
     }
 
     public String getFormattedSize() {
@@ -167,6 +180,20 @@ public class FtpFile {
         return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
     }
 
+    /**
+     * Whether {@code other} describes the same entry with unchanged size,
+     * modification time, permissions and ownership.
+     */
+    public boolean hasSameAttributes(FtpFile other) {
+        return equals(other)
+            && isDirectory == other.isDirectory
+            && size == other.size
+            && lastModified == other.lastModified
+            && permissions == other.permissions
+            && owner.equals(other.owner)
+            && group.equals(other.group);
+    }
+
     @Override
     public String toString() {
         return name;
@@ -181,27 +208,94 @@ public class FtpFile {
             return false;
         }
         FtpFile ftpFile = (FtpFile) obj;
-        return path.equals(ftpFile.path);
+        if (parent == null || ftpFile.parent == null) {
+            return parent == ftpFile.parent;
+        }
+        return parent.equals(ftpFile.parent) && name.equals(ftpFile.name);
     }
 
     @Override
     public int hashCode() {
-        return path.hashCode();
+        return parent == null ? 0 : 31 * parent.hashCode() + name.hashCode();
+    }
+
+    private static String parentOf(String path) {
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash <= 0 ? "/" : path.substring(0, lastSlash);
     }
 
-    private static LocalDateTime toLocalDateTime(Date timestamp) {
-        return timestamp.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+    private static String normalizeParent(String path) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            return path.substring(0, path.length() - 1);
+        }
+        return path.isEmpty() ? "/" : path;
     }
 
-    private static String extractPermissions(FTPFile ftpFile) {
-        String formatted = ftpFile.toFormattedString();
-        if (formatted != null && formatted.length() >= 10) {
-            return formatted.substring(0, 10);
+    private static short packPermissions(FTPFile ftpFile) {
+        int packed = 0;
+        int[] accesses = {FTPFile.USER_ACCESS, FTPFile.GROUP_ACCESS, FTPFile.WORLD_ACCESS};
+        int[] kinds = {FTPFile.READ_PERMISSION, FTPFile.WRITE_PERMISSION, FTPFile.EXECUTE_PERMISSION};
+        for (int a = 0; a < 3; a++) {
+            for (int k = 0; k < 3; k++) {
+                packed <<= 1;
+                if (ftpFile.hasPermission(accesses[a], kinds[k])) {
+                    packed |= 1;
+                }
+            }
+        }
+        int type;
+        if (ftpFile.isDirectory()) {
+            type = 1;
+        } else if (ftpFile.isSymbolicLink()) {
+            type = 2;
+        } else if (ftpFile.isFile()) {
+            type = 0;
+        } else {
+            type = TYPE_CHARS.length() - 1;
         }
-        return ftpFile.isDirectory() ? "drwxr-xr-x" : "-rw-r--r--";
+        return (short) (packed | type << TYPE_SHIFT);
     }
 
-    private static String nullToEmpty(String value) {
-        return value != null ? value : "";
+    /**
+     * Packs an {@code ls -l} style permission string such as {@code drwxr-xr-x}.
+     * Characters that cannot be represented are read as unset.
+     */
+    private static short packPermissions(String perms) {
+        if (perms == null || perms.length() < 10) {
+            return perms != null && perms.startsWith("d") ? DEFAULT_DIRECTORY_PERMISSIONS : DEFAULT_FILE_PERMISSIONS;
+        }
+
+        int type = TYPE_CHARS.indexOf(perms.charAt(0));
+        int packed = (type < 0 ? TYPE_CHARS.length() - 1 : type) << TYPE_SHIFT;
+        for (int i = 0; i < 9; i++) {
+            char c = perms.charAt(i + 1);
+            int bit = 8 - i;
+            boolean executeSlot = i % 3 == 2;
+            if (executeSlot && (c == 's' || c == 'S' || c == 't' || c == 'T')) {
+                // setuid, setgid or sticky; lower case means executable as well
+                packed |= 1 << (SPECIAL_SHIFT + 2 - i / 3);
+                if (Character.isLowerCase(c)) {
+                    packed |= 1 << bit;
+                }
+            } else if (c != '-') {
+                packed |= 1 << bit;
+            }
+        }
+        return (short) packed;
+    }
+
+    private static String formatPermissions(short packed) {
+        char[] chars = new char[10];
+        chars[0] = TYPE_CHARS.charAt((packed >> TYPE_SHIFT) & 0x7);
+        String rwx = "rwx";
+        for (int i = 0; i < 9; i++) {
+            boolean set = (packed & 1 << (8 - i)) != 0;
+            chars[i + 1] = set ? rwx.charAt(i % 3) : '-';
+            if (i % 3 == 2 && (packed & 1 << (SPECIAL_SHIFT + 2 - i / 3)) != 0) {
+                char special = i == 8 ? 't' : 's';
+                chars[i + 1] = set ? special : Character.toUpperCase(special);
+            }
+        }
+        return new String(chars);
     }
 }
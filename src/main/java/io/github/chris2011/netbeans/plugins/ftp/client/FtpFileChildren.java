@@ -19,23 +19,25 @@
 package io.github.chris2011.netbeans.plugins.ftp.client;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import org.openide.awt.StatusDisplayer;
 import org.openide.nodes.ChildFactory;
 import org.openide.nodes.Node;
 
+/**
+ * Creates the children of a directory node page by page: each call of
+ * {@link #createKeys} publishes the next page of the streamed listing, so
+ * large directories fill in while the listing is still being received.
+ */
 class FtpFileChildren extends ChildFactory<FtpFile> {
 
-    private static final Comparator<FtpFile> FILE_COMPARATOR = Comparator
-        .comparing(FtpFile::isDirectory).reversed()
-        .thenComparing(FtpFile::getName, String.CASE_INSENSITIVE_ORDER);
-
     private final FtpExplorerTopComponent explorerComponent;
     private final FtpFile parentFile;
 
+    private PendingListing pending;
+
     FtpFileChildren(FtpFile parentFile, FtpExplorerTopComponent explorerComponent) {
         this.parentFile = parentFile;
         this.explorerComponent = explorerComponent;
@@ -47,13 +49,34 @@ class FtpFileChildren extends ChildFactory<FtpFile> {
             return true;
         }
 
+        // The same list is passed for every page of one run; a new list means a refresh
+        if (pending == null || pending.keys != toPopulate) {
+            if (pending != null) {
+                pending.cancelled = true;
+            }
+            pending = new PendingListing(toPopulate);
+            FtpIoExecutor.getDefault().post("List " + parentFile.getPath(), pending);
+        }
+
         try {
-            List<FtpFile> files = new ArrayList<>(explorerComponent.listFiles(parentFile.getPath()));
-            Collections.sort(files, FILE_COMPARATOR);
-            toPopulate.addAll(files);
-        } catch (IOException ex) {
-            StatusDisplayer.getDefault().setStatusText("Failed to list " + parentFile.getPath() + ": " + ex.getMessage());
+            Object next = pending.pages.take();
+            if (next instanceof List) {
+                @SuppressWarnings("unchecked")
+                List<FtpFile> page = (List<FtpFile>) next;
+                toPopulate.addAll(page);
+                // Both runs are already sorted, so this is a linear merge
+                toPopulate.sort(FtpFile.DIRECTORIES_FIRST);
+                return false;
+            }
+            if (next instanceof Exception) {
+                StatusDisplayer.getDefault().setStatusText("Failed to list " + parentFile.getPath() + ": "
+                    + ((Exception) next).getMessage());
+            }
+        } catch (InterruptedException ex) {
+            pending.cancelled = true;
+            Thread.currentThread().interrupt();
         }
+        pending = null;
         return true;
     }
 
@@ -61,4 +84,31 @@ class FtpFileChildren extends ChildFactory<FtpFile> {
     protected Node createNodeForKey(FtpFile file) {
         return new FtpFileNode(file, explorerComponent);
     }
+
+    private final class PendingListing implements Runnable {
+
+        private final List<FtpFile> keys;
+        private final BlockingQueue<Object> pages = new LinkedBlockingQueue<>();
+        private volatile boolean cancelled;
+
+        PendingListing(List<FtpFile> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public void run() {
+            try {
+                explorerComponent.listFiles(parentFile.getPath(), page -> {
+                    if (!cancelled && !page.isEmpty()) {
+                        page.sort(FtpFile.DIRECTORIES_FIRST);
+                        pages.add(page);
+                    }
+                    return !cancelled;
+                });
+                pages.add(Boolean.TRUE);
+            } catch (IOException | RuntimeException ex) {
+                pages.add(ex);
+            }
+        }
+    }
 }
@@ -5,8 +5,7 @@ import java.awt.event.ActionEvent;
 import java.time.format.DateTimeFormatter;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
-import javax.swing.Icon;
-import javax.swing.ImageIcon;
+import javax.swing.event.ChangeListener;
 import org.openide.nodes.AbstractNode;
 import org.openide.nodes.Children;
 import org.openide.nodes.Node.Property;
@@ -19,6 +18,7 @@ class FtpFileNode extends AbstractNode {
 
     private final FtpExplorerTopComponent explorerComponent;
     private final FtpFile file;
+    private ChangeListener iconListener;
     private final Action openAction = new AbstractAction() {
         @Override
         public void actionPerformed(ActionEvent e) {
@@ -26,6 +26,20 @@ class FtpFileNode extends AbstractNode {
         }
     };
 
+    private final Action downloadFolderAction = new AbstractAction("Download Folder...") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            FtpFolderDownload.downloadFolder(file, explorerComponent.getFtpClient());
+        }
+    };
+
+    private final Action syncFolderAction = new AbstractAction("Synchronize from Local Folder...") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            FtpMirrorSync.syncFolder(file, explorerComponent.getFtpClient());
+        }
+    };
+
     FtpFileNode(FtpFile file, FtpExplorerTopComponent explorerComponent) {
         super(childrenFor(file, explorerComponent));
         this.file = file;
@@ -51,17 +65,16 @@ class FtpFileNode extends AbstractNode {
             icon = FtpIcons.getFolderImage();
         } else {
             // Use file extension specific icon for files
-            Icon fileIcon = FtpIcons.getFileIconByExtension(file.getName());
-            if (fileIcon != null) {
-                // Convert Icon to Image properly
-                if (fileIcon instanceof ImageIcon) {
-                    icon = ((ImageIcon) fileIcon).getImage();
-                } else {
-                    // For other Icon types, convert using ImageUtilities
-                    icon = org.openide.util.ImageUtilities.icon2Image(fileIcon);
-                }
-            } else {
-                icon = FtpIcons.getFileImage();
+            icon = FtpIcons.getFileImageByExtension(file.getName());
+            if (!FtpIcons.isFileIconResolved(file.getName()) && iconListener == null) {
+                iconListener = e -> {
+                    if (FtpIcons.isFileIconResolved(file.getName())) {
+                        FtpIcons.removeChangeListener(iconListener);
+                        fireIconChange();
+                        fireOpenedIconChange();
+                    }
+                };
+                FtpIcons.addChangeListener(iconListener);
             }
         }
         return icon != null ? icon : super.getIcon(type);
@@ -80,6 +93,32 @@ class FtpFileNode extends AbstractNode {
         return super.getPreferredAction();
     }
 
+    @Override
+    public Action[] getActions(boolean context) {
+        if (file.isDirectory()) {
+            return new Action[]{downloadFolderAction, syncFolderAction, createWatchAction()};
+        }
+        return super.getActions(context);
+    }
+
+    private Action createWatchAction() {
+        FtpClient client = explorerComponent.getFtpClient();
+        if (FtpFolderWatcher.isWatching(file, client)) {
+            return new AbstractAction("Stop Synchronizing") {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    FtpFolderWatcher.stopWatching(file, client);
+                }
+            };
+        }
+        return new AbstractAction("Keep Synchronized with Local Folder...") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                FtpFolderWatcher.startWatching(file, client);
+            }
+        };
+    }
+
     // Direct getter methods for OutlineView - these are called directly by column names
     public String getSize() {
         return file.isDirectory() ? "" : file.getFormattedSize();
@@ -1,55 +1,85 @@
 package io.github.chris2011.netbeans.plugins.ftp.client;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.SwingUtilities;
+import org.netbeans.api.progress.ProgressHandle;
+import org.netbeans.api.progress.ProgressHandleFactory;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 import org.openide.awt.NotificationDisplayer;
 import org.openide.cookies.OpenCookie;
+import org.openide.filesystems.FileChangeAdapter;
+import org.openide.filesystems.FileEvent;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.loaders.DataObject;
+import org.openide.loaders.DataObjectNotFoundException;
 import org.openide.util.RequestProcessor;
+import org.openide.windows.TopComponent;
 
 public class FtpFileOpener {
 
-    private static final RequestProcessor RP = new RequestProcessor("FtpFileOpener");
+    private static final RequestProcessor AUTO_SAVE_RP = new RequestProcessor("FtpFileOpener.AutoSave", 4);
+    private static final int PROGRESS_UNITS = 1000;
+    private static final int AUTO_SAVE_DELAY = 500;
+    private static final Map<String, AutoSave> AUTO_SAVES = new ConcurrentHashMap<>();
 
     public static void openFile(FtpFile ftpFile, FtpClient ftpClient) {
-        RP.post(() -> {
+        // Download file to a temp directory that stays the same for this remote file,
+        // so an interrupted download can be resumed from the transfer journal
+        Path tempFile = Paths.get(System.getProperty("java.io.tmpdir"), "ftp-client",
+            ftpClient.getConnection().getId(), Integer.toHexString(ftpFile.getPath().hashCode()), ftpFile.getName());
+        if (focusOpenedEditor(tempFile)) {
+            return;
+        }
+        FtpTransfer transfer = FtpTransfer.download(ftpClient, ftpFile.getPath(), tempFile, ftpFile.getSize(),
+            FtpTransfer.Priority.INTERACTIVE);
+        ProgressHandle handle = ProgressHandleFactory.createHandle(
+            "Downloading " + ftpFile.getName(), () -> {
+                FtpTransferQueue.getDefault().cancel(transfer);
+                return true;
+            });
+        transfer.setProgressListener(bytes -> reportProgress(handle, bytes, ftpFile.getSize()));
+
+        FtpIoExecutor.getDefault().post("Open " + ftpFile.getPath(), () -> {
+            handle.start(PROGRESS_UNITS);
             try {
-                // Download file to temp directory
-                Path tempDir = Files.createTempDirectory("ftp-client-");
-                Path tempFile = tempDir.resolve(ftpFile.getName());
-
-                // Download file content
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                org.apache.commons.net.ftp.FTPClient client = ftpClient.ftpClient;
-
-                if (client.retrieveFile(ftpFile.getPath(), baos)) {
-                    // Write to temp file
-                    try (FileOutputStream fos = new FileOutputStream(tempFile.toFile())) {
-                        fos.write(baos.toByteArray());
-                    }
+                Files.createDirectories(tempFile.getParent());
+
+                // Stream the content straight to disk
+                boolean downloaded;
+                try {
+                    downloaded = FtpTransferQueue.getDefault().submit(transfer).await();
+                } catch (InterruptedIOException ex) {
+                    Files.deleteIfExists(tempFile);
+                    return;
+                }
+
+                if (downloaded) {
+                    Path openedFile = tempFile;
 
                     // Open in NetBeans editor
                     SwingUtilities.invokeLater(() -> {
                         try {
-                            FileObject fileObj = FileUtil.toFileObject(tempFile.toFile());
+                            FileObject fileObj = FileUtil.toFileObject(openedFile.toFile());
                             if (fileObj != null) {
+                                // Before the refresh, which reports the download as a change
+                                setupAutoSave(fileObj, ftpFile, ftpClient, openedFile);
+                                fileObj.refresh();
+
                                 DataObject dataObj = DataObject.find(fileObj);
                                 OpenCookie openCookie = dataObj.getLookup().lookup(OpenCookie.class);
                                 if (openCookie != null) {
                                     openCookie.open();
 
-                                    // Set up auto-save listener
-                                    setupAutoSave(fileObj, ftpFile, ftpClient, tempFile);
-
                                     // Show success notification
                                     org.openide.awt.NotificationDisplayer.getDefault().notify(
                                         "FTP File Opened",
@@ -76,6 +106,7 @@ public class FtpFileOpener {
                         }
                     });
                 } else {
+                    Files.deleteIfExists(tempFile);
                     String errorMsg = "Failed to download file from FTP server: " + ftpFile.getName();
                     String details = "FTP retrieve operation failed. Check file existence and permissions.";
                     SwingUtilities.invokeLater(() -> {
@@ -90,6 +121,7 @@ public class FtpFileOpener {
                     });
                 }
             } catch (IOException ex) {
+                // Keep a partial download, the transfer journal resumes it
                 String errorMsg = "Error downloading file: " + ftpFile.getName();
                 String details = "I/O Error: " + ex.getMessage();
                 SwingUtilities.invokeLater(() -> {
@@ -102,71 +134,214 @@ public class FtpFileOpener {
                         org.openide.awt.NotificationDisplayer.Priority.HIGH
                     );
                 });
+            } finally {
+                handle.finish();
             }
         });
     }
 
+    /**
+     * Updates {@code handle} for {@code bytes} of {@code size} bytes; the size
+     * from the listing may be unknown or outdated.
+     */
+    private static boolean reportProgress(ProgressHandle handle, long bytes, long size) {
+        if (size > 0 && bytes <= size) {
+            handle.progress(formatBytes(bytes) + " of " + formatBytes(size),
+                (int) (bytes * PROGRESS_UNITS / size));
+        } else {
+            handle.progress(formatBytes(bytes));
+        }
+        return true;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Brings the editor of {@code localFile} to front if it is open already;
+     * downloading again would replace the content under it, unsaved changes
+     * included. Called on the EDT.
+     */
+    private static boolean focusOpenedEditor(Path localFile) {
+        if (!Files.exists(localFile)) {
+            return false;
+        }
+        FileObject fileObj = FileUtil.toFileObject(localFile.toFile());
+        if (fileObj == null) {
+            return false;
+        }
+        try {
+            DataObject dataObj = DataObject.find(fileObj);
+            OpenCookie openCookie = dataObj.getLookup().lookup(OpenCookie.class);
+            if (openCookie == null || (!dataObj.isModified() && !isOpened(dataObj))) {
+                return false;
+            }
+            openCookie.open();
+            return true;
+        } catch (DataObjectNotFoundException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isOpened(DataObject dataObj) {
+        for (TopComponent tc : TopComponent.getRegistry().getOpened()) {
+            if (tc.getLookup().lookup(DataObject.class) == dataObj) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static void setupAutoSave(FileObject fileObj, FtpFile ftpFile, FtpClient ftpClient, Path tempFile) {
-        // Add file change listener for auto-save
-        fileObj.addFileChangeListener(new org.openide.filesystems.FileChangeAdapter() {
-            @Override
-            public void fileChanged(org.openide.filesystems.FileEvent fe) {
-                // Auto-save to FTP when file changes
-                RP.post(() -> {
-                    try {
-                        if (Files.exists(tempFile)) {
-                            byte[] content = Files.readAllBytes(tempFile);
-                            ByteArrayInputStream bais = new ByteArrayInputStream(content);
-
-                            org.apache.commons.net.ftp.FTPClient client = ftpClient.ftpClient;
-                            if (client.isConnected() && client.storeFile(ftpFile.getPath(), bais)) {
-                                // Show success notification
-                                SwingUtilities.invokeLater(() -> {
-                                    org.openide.awt.NotificationDisplayer.getDefault().notify(
-                                        "FTP File Saved",
-                                        FtpIcons.getNotificationIcon(),
-                                        "Auto-saved " + ftpFile.getName() + " to FTP server",
-                                        null
-                                    );
-                                });
-                            } else {
-                                String errorMsg = "Failed to auto-save " + ftpFile.getName() + " to FTP server";
-                                String details = client.isConnected() ?
-                                    "FTP store operation failed. Check file permissions and disk space." :
-                                    "FTP connection lost. Please reconnect and try again.";
-
-                                SwingUtilities.invokeLater(() -> {
-                                    showErrorDialog(errorMsg + "\n\nDetails: " + details);
-                                    // Also show notification for better visibility
-                                    org.openide.awt.NotificationDisplayer.getDefault().notify(
-                                        "FTP Save Failed",
-                                        FtpIcons.getNotificationIcon(),
-                                        details,
-                                        null,
-                                        org.openide.awt.NotificationDisplayer.Priority.HIGH
-                                    );
-                                });
-                            }
-                        }
-                    } catch (IOException ex) {
-                        String errorMsg = "Auto-save error for " + ftpFile.getName();
-                        String details = "I/O Error: " + ex.getMessage();
+        // One listener per file, however often it is opened
+        AUTO_SAVES.computeIfAbsent(ftpClient.getConnection().getId() + ":" + ftpFile.getPath(),
+            key -> new AutoSave(key, fileObj, ftpFile, ftpClient, tempFile)).downloaded();
+    }
 
-                        SwingUtilities.invokeLater(() -> {
-                            showErrorDialog(errorMsg + "\n\nDetails: " + details);
-                            // Also show notification for better visibility
-                            org.openide.awt.NotificationDisplayer.getDefault().notify(
-                                "FTP Save Error",
-                                FtpIcons.getNotificationIcon(),
-                                details,
-                                null,
-                                org.openide.awt.NotificationDisplayer.Priority.HIGH
-                            );
-                        });
+    /**
+     * Uploads the local copy of one remote file after it was saved.
+     * <p>
+     * Saves that follow each other within {@link #AUTO_SAVE_DELAY} result in a
+     * single upload, and a save during a queued or running upload cancels it,
+     * because the next run sends the newer content anyway. A change that is
+     * only the download itself is not uploaded. The auto-save ends when the
+     * last window showing the file is closed.
+     */
+    private static final class AutoSave extends FileChangeAdapter implements PropertyChangeListener {
+
+        private final String key;
+        private final FileObject fileObj;
+        private final FtpFile ftpFile;
+        private final FtpClient ftpClient;
+        private final Path localFile;
+        private final RequestProcessor.Task task;
+        private volatile long downloadedModified = -1;
+        private volatile FtpTransfer current;
+
+        AutoSave(String key, FileObject fileObj, FtpFile ftpFile, FtpClient ftpClient, Path localFile) {
+            this.key = key;
+            this.fileObj = fileObj;
+            this.ftpFile = ftpFile;
+            this.ftpClient = ftpClient;
+            this.localFile = localFile;
+            this.task = AUTO_SAVE_RP.create(this::upload);
+            fileObj.addFileChangeListener(this);
+            TopComponent.getRegistry().addPropertyChangeListener(this);
+        }
+
+        /**
+         * Notes that the local copy now has the content of the server.
+         */
+        void downloaded() {
+            try {
+                downloadedModified = Files.getLastModifiedTime(localFile).toMillis();
+            } catch (IOException ex) {
+                downloadedModified = -1;
+            }
+        }
+
+        @Override
+        public void fileChanged(FileEvent fe) {
+            FtpTransfer outdated = current;
+            if (outdated != null) {
+                FtpTransferQueue.getDefault().cancel(outdated);
+            }
+            task.schedule(AUTO_SAVE_DELAY);
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            if (!TopComponent.Registry.PROP_TC_CLOSED.equals(evt.getPropertyName())) {
+                return;
+            }
+            try {
+                if (isOpened(DataObject.find(fileObj))) {
+                    return;
+                }
+            } catch (DataObjectNotFoundException ex) {
+                // Deleted, nothing to save any more
+            }
+            // A save while closing is already scheduled and still runs
+            AUTO_SAVES.remove(key, this);
+            fileObj.removeFileChangeListener(this);
+            TopComponent.getRegistry().removePropertyChangeListener(this);
+        }
+
+        private void upload() {
+            Path file = localFile;
+            try {
+                if (!Files.exists(file)
+                    || Files.getLastModifiedTime(file).toMillis() == downloadedModified) {
+                    return;
+                }
+
+                boolean connected = ftpClient.isConnected();
+                boolean uploaded = false;
+                if (connected) {
+                    FtpTransfer transfer = FtpTransfer.upload(ftpClient, file, ftpFile.getPath(),
+                        FtpTransfer.Priority.BACKGROUND);
+                    current = transfer;
+                    try {
+                        uploaded = FtpTransferQueue.getDefault().submit(transfer).await();
+                    } catch (InterruptedIOException superseded) {
+                        // A newer save is already scheduled
+                        return;
+                    } finally {
+                        current = null;
                     }
+                }
+
+                if (uploaded) {
+                    ftpClient.invalidateListing(ftpFile.getParentPath());
+
+                    // Show success notification
+                    SwingUtilities.invokeLater(() -> {
+                        org.openide.awt.NotificationDisplayer.getDefault().notify(
+                            "FTP File Saved",
+                            FtpIcons.getNotificationIcon(),
+                            "Auto-saved " + ftpFile.getName() + " to FTP server",
+                            null
+                        );
+                    });
+                } else {
+                    String errorMsg = "Failed to auto-save " + ftpFile.getName() + " to FTP server";
+                    String details = connected ?
+                        "FTP store operation failed. Check file permissions and disk space." :
+                        "FTP connection lost. Please reconnect and try again.";
+
+                    SwingUtilities.invokeLater(() -> {
+                        showErrorDialog(errorMsg + "\n\nDetails: " + details);
+                        // Also show notification for better visibility
+                        org.openide.awt.NotificationDisplayer.getDefault().notify(
+                            "FTP Save Failed",
+                            FtpIcons.getNotificationIcon(),
+                            details,
+                            null,
+                            org.openide.awt.NotificationDisplayer.Priority.HIGH
+                        );
+                    });
+                }
+            } catch (IOException ex) {
+                String errorMsg = "Auto-save error for " + ftpFile.getName();
+                String details = "I/O Error: " + ex.getMessage();
+
+                SwingUtilities.invokeLater(() -> {
+                    showErrorDialog(errorMsg + "\n\nDetails: " + details);
+                    // Also show notification for better visibility
+                    org.openide.awt.NotificationDisplayer.getDefault().notify(
+                        "FTP Save Error",
+                        FtpIcons.getNotificationIcon(),
+                        details,
+                        null,
+                        org.openide.awt.NotificationDisplayer.Priority.HIGH
+                    );
                 });
             }
-        });
+        }
     }
 
     private static void showErrorDialog(String message) {
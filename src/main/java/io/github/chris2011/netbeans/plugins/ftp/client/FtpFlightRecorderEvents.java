@@ -0,0 +1,104 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the FTP client, so FTP stalls show up next
+ * to EDT pauses and GC in the same recording. They cost next to nothing while
+ * no recording is running.
+ */
+final class FtpFlightRecorderEvents {
+
+    static final String SUCCESS = "success";
+    static final String REFUSED = "refused";
+    static final String CANCELLED = "cancelled";
+    static final String PAUSED = "paused";
+    static final String FAILED = "failed";
+
+    private FtpFlightRecorderEvents() {
+    }
+
+    /**
+     * @return {@link #CANCELLED} for an aborted operation, {@link #FAILED} for
+     *         anything else, a timeout included
+     */
+    static String outcomeOf(Throwable error) {
+        return error instanceof InterruptedIOException && !(error instanceof SocketTimeoutException)
+            ? CANCELLED : FAILED;
+    }
+
+    @Name("io.github.chris2011.ftp.Connect")
+    @Label("FTP Connect")
+    @Category({"FTP Client"})
+    @Description("Connecting and logging in the first session of a connection")
+    static final class Connect extends Event {
+
+        @Label("Connection Id")
+        String connectionId;
+
+        @Label("Host")
+        String host;
+
+        @Label("Port")
+        int port;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("io.github.chris2011.ftp.List")
+    @Label("FTP List")
+    @Category({"FTP Client"})
+    @Description("Listing one remote directory")
+    static final class List extends Event {
+
+        @Label("Connection Id")
+        String connectionId;
+
+        @Label("Path")
+        String path;
+
+        @Label("Entries")
+        int entries;
+
+        @Label("Cached")
+        @Description("Served from the listing cache without a round trip")
+        boolean cached;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("io.github.chris2011.ftp.Transfer")
+    @Label("FTP Transfer")
+    @Category({"FTP Client"})
+    @Description("One run of an upload or download")
+    static final class Transfer extends Event {
+
+        @Label("Connection Id")
+        String connectionId;
+
+        @Label("Direction")
+        String direction;
+
+        @Label("Remote Path")
+        String path;
+
+        @Label("Local Path")
+        String localPath;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Outcome")
+        String outcome;
+    }
+}
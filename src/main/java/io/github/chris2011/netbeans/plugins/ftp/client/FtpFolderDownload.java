@@ -0,0 +1,337 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.JFileChooser;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import org.netbeans.api.progress.ProgressHandle;
+import org.netbeans.api.progress.ProgressHandleFactory;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+import org.openide.awt.NotificationDisplayer;
+import org.openide.awt.StatusDisplayer;
+import org.openide.windows.WindowManager;
+
+/**
+ * Downloads a remote directory tree into a local folder.
+ * <p>
+ * Listing directories and downloading files is done by the same fixed set of
+ * workers, one per pooled session of the connection but one, so the crawl and
+ * the downloads overlap without waiting for sessions, and one session stays
+ * free for browsing. Directories go to the front of the work queue, which
+ * keeps the crawl ahead of the downloads. Files are background transfers of
+ * the {@link FtpTransferQueue}, so its limits apply and they can be paused;
+ * every file is fetched in a single stream, identified by the size and time
+ * of the listing. A failed listing or download is recorded and the rest goes
+ * on.
+ */
+public final class FtpFolderDownload {
+
+    /**
+     * Result of a finished download.
+     */
+    public static final class Summary {
+
+        private final int files;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final List<String> failures;
+
+        Summary(int files, long bytes, long elapsedNanos, List<String> failures) {
+            this.files = files;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public int getFileCount() {
+            return files;
+        }
+
+        public long getByteCount() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public long getBytesPerSecond() {
+            return elapsedNanos > 0 ? bytes * 1_000_000_000L / elapsedNanos : 0;
+        }
+
+        /**
+         * One line per path that could not be listed or downloaded.
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+    }
+
+    private static final class Work {
+
+        private final FtpFile remote;
+        private final Path local;
+
+        Work(FtpFile remote, Path local) {
+            this.remote = remote;
+            this.local = local;
+        }
+    }
+
+    private static final Work END = new Work(null, null);
+
+    private final FtpClient client;
+    private final FtpFile directory;
+    private final Path target;
+    private final int workers;
+    private final BlockingDeque<Work> queue = new LinkedBlockingDeque<>();
+    // Entries queued or being worked on; the download is over when it drops to zero
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger filesFound = new AtomicInteger();
+    private final AtomicInteger filesDone = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile Runnable progressListener;
+
+    /**
+     * @param target the local folder receiving the contents of {@code directory}
+     */
+    public FtpFolderDownload(FtpClient client, FtpFile directory, Path target) {
+        this.client = client;
+        this.directory = directory;
+        this.target = target.toAbsolutePath().normalize();
+        this.workers = Math.max(1, client.getConnection().getMaxSessions() - 1);
+    }
+
+    /**
+     * Asks for a local folder and downloads {@code directory} into a
+     * subfolder of the same name, reporting progress and a summary.
+     */
+    public static void downloadFolder(FtpFile directory, FtpClient client) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Download " + directory.getName() + " to");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showDialog(WindowManager.getDefault().getMainWindow(), "Download") != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        String folderName = directory.getName().replace('/', '_').replace('\\', '_');
+        Path target = chooser.getSelectedFile().toPath().resolve(folderName);
+        FtpFolderDownload download = new FtpFolderDownload(client, directory, target);
+
+        AtomicReference<FtpIoExecutor.Operation<Summary>> operation = new AtomicReference<>();
+        ProgressHandle handle = ProgressHandleFactory.createHandle("Downloading " + directory.getName(), () -> {
+            FtpIoExecutor.Operation<Summary> running = operation.get();
+            if (running != null) {
+                running.cancel();
+            }
+            return true;
+        });
+        download.setProgressListener(() -> handle.progress(download.getFilesDone() + " of "
+            + download.getFilesFound() + " files, " + FtpTransfersTopComponent.formatBytes(download.getBytes())));
+
+        handle.start();
+        operation.set(FtpIoExecutor.getDefault().submit("Download folder " + directory.getPath(), download::run));
+        operation.get().getResult().whenCompleteAsync((summary, error) -> {
+            handle.finish();
+            if (summary != null) {
+                notifySummary(directory, target, summary);
+            } else if (operation.get().isCancelled() || error instanceof InterruptedIOException) {
+                StatusDisplayer.getDefault().setStatusText("Download of " + directory.getName() + " cancelled");
+            } else {
+                NotificationDisplayer.getDefault().notify(
+                    "FTP Download Error",
+                    FtpIcons.getNotificationIcon(),
+                    "Error downloading " + directory.getName() + ": " + error.getMessage(),
+                    null,
+                    NotificationDisplayer.Priority.HIGH
+                );
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    private static void notifySummary(FtpFile directory, Path target, Summary summary) {
+        String text = String.format("Downloaded %d files (%s) in %.1f s, %s/s",
+            summary.getFileCount(), FtpTransfersTopComponent.formatBytes(summary.getByteCount()),
+            summary.getElapsedMillis() / 1000.0, FtpTransfersTopComponent.formatBytes(summary.getBytesPerSecond()));
+        List<String> failed = summary.getFailures();
+        if (failed.isEmpty()) {
+            NotificationDisplayer.getDefault().notify("FTP Folder Downloaded", FtpIcons.getNotificationIcon(),
+                text, null, NotificationDisplayer.Priority.NORMAL);
+            return;
+        }
+
+        failed.forEach(failure -> System.err.println("Folder download: " + failure));
+        NotificationDisplayer.getDefault().notify("FTP Folder Downloaded with Errors", FtpIcons.getNotificationIcon(),
+            text + ", " + failed.size() + " failed",
+            e -> showFailures("Failed downloads from " + directory.getPath() + " to " + target, failed),
+            NotificationDisplayer.Priority.HIGH);
+    }
+
+    static void showFailures(String title, List<String> failures) {
+        JTextArea details = new JTextArea(String.join("\n", failures), 15, 60);
+        details.setEditable(false);
+        NotifyDescriptor descriptor = new NotifyDescriptor.Message(new JScrollPane(details),
+            NotifyDescriptor.WARNING_MESSAGE);
+        descriptor.setTitle(title);
+        DialogDisplayer.getDefault().notify(descriptor);
+    }
+
+    /**
+     * Called from the workers after every listed directory and every file.
+     */
+    public void setProgressListener(Runnable listener) {
+        this.progressListener = listener;
+    }
+
+    public int getFilesFound() {
+        return filesFound.get();
+    }
+
+    public int getFilesDone() {
+        return filesDone.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Downloads the tree and blocks until all workers are done. The workers
+     * are forked from the calling {@link FtpIoExecutor} operation, so
+     * cancelling it stops them.
+     *
+     * @throws InterruptedIOException if the download was cancelled
+     */
+    public Summary run() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(target);
+        pending.set(1);
+        queue.add(new Work(directory, target));
+
+        List<FtpIoExecutor.Operation<Void>> operations = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            operations.add(FtpIoExecutor.getDefault().fork("Download " + directory.getPath() + " #" + i, this::work));
+        }
+        try {
+            for (FtpIoExecutor.Operation<Void> operation : operations) {
+                operation.get();
+            }
+        } catch (IOException | RuntimeException e) {
+            operations.forEach(FtpIoExecutor.Operation::cancel);
+            throw e;
+        }
+
+        return new Summary(filesDone.get(), bytes.get(), System.nanoTime() - started, new ArrayList<>(failures));
+    }
+
+    private Void work() throws IOException {
+        while (true) {
+            Work work;
+            try {
+                work = queue.takeFirst();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Folder download interrupted");
+            }
+            if (work == END) {
+                return null;
+            }
+
+            try {
+                if (work.remote.isDirectory()) {
+                    list(work);
+                } else {
+                    download(work);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+                    throw e;
+                }
+                failures.add(work.remote.getPath() + ": " + e.getMessage());
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    for (int i = 0; i < workers; i++) {
+                        queue.addLast(END);
+                    }
+                }
+                Runnable listener = progressListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+        }
+    }
+
+    private void list(Work work) throws IOException {
+        Files.createDirectories(work.local);
+        client.listFiles(work.remote.getPath(), FtpClient.LISTING_PAGE_SIZE, page -> {
+            for (FtpFile file : page) {
+                enqueue(file, work.local);
+            }
+            return true;
+        });
+    }
+
+    private void enqueue(FtpFile file, Path localDirectory) {
+        String name = file.getName();
+        Path local = localDirectory.resolve(name).normalize();
+        // A hostile listing must not write outside the target
+        if (name.isEmpty() || name.contains("/") || name.contains("\\") || !local.startsWith(target)
+            || local.equals(localDirectory)) {
+            failures.add(file.getPath() + ": skipped, unsafe file name");
+            return;
+        }
+
+        pending.incrementAndGet();
+        if (file.isDirectory()) {
+            queue.addFirst(new Work(file, local));
+        } else {
+            filesFound.incrementAndGet();
+            queue.addLast(new Work(file, local));
+        }
+    }
+
+    private void download(Work work) throws IOException {
+        FtpTransfer transfer = FtpTransfer.download(client, work.remote, work.local, FtpTransfer.Priority.BACKGROUND);
+        long[] reported = new long[1];
+        transfer.setProgressListener(total -> {
+            bytes.addAndGet(total - reported[0]);
+            reported[0] = total;
+            return true;
+        });
+
+        boolean downloaded;
+        try {
+            downloaded = FtpTransferQueue.getDefault().submit(transfer).await();
+        } catch (InterruptedIOException e) {
+            if (FtpIoExecutor.isCurrentCancelled() || Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            // Only this file was cancelled in the Transfers window
+            failures.add(work.remote.getPath() + ": cancelled");
+            return;
+        }
+        if (!downloaded) {
+            failures.add(work.remote.getPath() + ": the server refused the transfer");
+            return;
+        }
+        Files.setLastModifiedTime(work.local, FileTime.fromMillis(work.remote.getLastModifiedMillis()));
+        filesDone.incrementAndGet();
+    }
+}
@@ -0,0 +1,322 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.prefs.Preferences;
+import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
+import org.openide.awt.NotificationDisplayer;
+import org.openide.awt.StatusDisplayer;
+import org.openide.util.NbPreferences;
+import org.openide.util.RequestProcessor;
+import org.openide.windows.WindowManager;
+
+/**
+ * Keeps a remote directory in sync with a local folder while the connection
+ * is open: like the auto-save of opened files, but for a whole tree.
+ * <p>
+ * A {@link WatchService} registered on every local directory reports
+ * changes. Changed paths are collected in a set, so a burst of events for the
+ * same file, e.g. from a build, results in a single upload; the batch is
+ * flushed {@link #BATCH_DELAY} ms after the last event. A flush uploads and
+ * deletes in parallel over the pooled sessions through {@link FtpMirrorSync},
+ * which also skips files whose content did not change. Flushes never overlap.
+ * If the watch service loses events, the next flush is a full sync instead.
+ */
+public final class FtpFolderWatcher {
+
+    private static final RequestProcessor RP = new RequestProcessor("FtpFolderWatcher", 4);
+    private static final int BATCH_DELAY = 500;
+    private static final Map<String, FtpFolderWatcher> WATCHERS = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final FtpClient client;
+    private final String remoteRoot;
+    private final FtpMirrorSync sync;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final RequestProcessor.Task flushTask;
+    private final PropertyChangeListener disconnectListener = evt -> {
+        if (FtpClient.PROP_DISCONNECTED.equals(evt.getPropertyName())) {
+            stop();
+        }
+    };
+    private boolean fullSyncPending;
+    private volatile boolean stopped;
+    private volatile FtpIoExecutor.Operation<Void> watchOperation;
+    private volatile FtpIoExecutor.Operation<?> flushOperation;
+
+    private FtpFolderWatcher(String key, FtpClient client, Path localRoot, String remoteRoot) throws IOException {
+        this.key = key;
+        this.client = client;
+        this.remoteRoot = remoteRoot;
+        this.sync = new FtpMirrorSync(client, localRoot, remoteRoot);
+        this.watchService = localRoot.getFileSystem().newWatchService();
+        this.flushTask = RP.create(this::flush);
+    }
+
+    /**
+     * Whether {@code directory} is kept in sync with a local folder.
+     */
+    public static boolean isWatching(FtpFile directory, FtpClient client) {
+        return WATCHERS.containsKey(key(directory, client));
+    }
+
+    /**
+     * Asks for a local folder, synchronizes {@code directory} with it once
+     * and then pushes every local change until {@link #stopWatching} or the
+     * connection is closed.
+     */
+    public static void startWatching(FtpFile directory, FtpClient client) {
+        String key = key(directory, client);
+        if (WATCHERS.containsKey(key)) {
+            return;
+        }
+        Preferences lastFolders = NbPreferences.forModule(FtpMirrorSync.class).node("mirrorFolders");
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Keep " + directory.getPath() + " synchronized with");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        String lastFolder = lastFolders.get(key, null);
+        if (lastFolder != null) {
+            chooser.setSelectedFile(new File(lastFolder));
+        }
+        if (chooser.showDialog(WindowManager.getDefault().getMainWindow(), "Synchronize") != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        Path localRoot = chooser.getSelectedFile().toPath();
+        lastFolders.put(key, localRoot.toString());
+        FtpIoExecutor.getDefault().submit("Watch " + localRoot, () -> {
+            FtpFolderWatcher watcher = new FtpFolderWatcher(key, client, localRoot, directory.getPath());
+            if (WATCHERS.putIfAbsent(key, watcher) != null) {
+                watcher.watchService.close();
+                return null;
+            }
+            try {
+                watcher.start();
+            } catch (IOException | RuntimeException e) {
+                watcher.stop();
+                throw e;
+            }
+            return watcher;
+        }).getResult().whenCompleteAsync((watcher, error) -> {
+            if (error != null) {
+                NotificationDisplayer.getDefault().notify(
+                    "FTP Synchronization Error",
+                    FtpIcons.getNotificationIcon(),
+                    "Cannot watch " + localRoot + ": " + error.getMessage(),
+                    null,
+                    NotificationDisplayer.Priority.HIGH
+                );
+            } else if (watcher != null) {
+                StatusDisplayer.getDefault().setStatusText("Keeping " + directory.getPath()
+                    + " synchronized with " + localRoot);
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    public static void stopWatching(FtpFile directory, FtpClient client) {
+        FtpFolderWatcher watcher = WATCHERS.get(key(directory, client));
+        if (watcher != null) {
+            watcher.stop();
+            StatusDisplayer.getDefault().setStatusText("Stopped synchronizing " + directory.getPath());
+        }
+    }
+
+    private static String key(FtpFile directory, FtpClient client) {
+        return client.getConnection().getId() + ":" + directory.getPath();
+    }
+
+    private void start() throws IOException {
+        client.addPropertyChangeListener(disconnectListener);
+        // Register before the initial sync, so nothing changed during it is missed
+        register(sync.getLocalRoot(), false);
+        watchOperation = FtpIoExecutor.getDefault().post("Watch " + sync.getLocalRoot(), this::watch);
+        synchronized (this) {
+            fullSyncPending = true;
+        }
+        flushTask.schedule(0);
+    }
+
+    private void stop() {
+        stopped = true;
+        WATCHERS.remove(key, this);
+        client.removePropertyChangeListener(disconnectListener);
+        flushTask.cancel();
+        FtpIoExecutor.Operation<Void> watching = watchOperation;
+        if (watching != null) {
+            watching.cancel();
+        }
+        FtpIoExecutor.Operation<?> flushing = flushOperation;
+        if (flushing != null) {
+            flushing.cancel();
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close watch service: " + e.getMessage());
+        }
+        sync.saveManifest();
+    }
+
+    /**
+     * Registers {@code directory} and all directories below it.
+     *
+     * @param created whether the tree is new, so its files are queued as well;
+     *                they may have been written before it was registered
+     */
+    private void register(Path directory, boolean created) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(sync.getLocalRoot()) && sync.relativePath(dir) == null) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (created && attrs.isRegularFile()) {
+                    changed(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Deleted again before we got to it, the delete event follows
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watch() {
+        try {
+            while (!stopped) {
+                WatchKey watchKey = watchService.take();
+                Path dir = directories.get(watchKey);
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        synchronized (this) {
+                            fullSyncPending = true;
+                        }
+                        flushTask.schedule(BATCH_DELAY);
+                        continue;
+                    }
+                    if (dir == null) {
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS) && sync.relativePath(child) != null) {
+                        try {
+                            register(child, true);
+                        } catch (IOException e) {
+                            System.err.println("Failed to watch " + child + ": " + e.getMessage());
+                        }
+                    }
+                    changed(child);
+                }
+                if (!watchKey.reset()) {
+                    directories.remove(watchKey);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private void changed(Path file) {
+        String path = sync.relativePath(file);
+        if (path == null) {
+            return;
+        }
+        synchronized (this) {
+            pending.add(path);
+        }
+        flushTask.schedule(BATCH_DELAY);
+    }
+
+    /**
+     * Pushes the changes collected so far. Runs on {@link #flushTask}, which
+     * never runs twice at the same time, and waits for the transfers.
+     */
+    private void flush() {
+        List<String> batch;
+        boolean fullSync;
+        synchronized (this) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            fullSync = fullSyncPending;
+            fullSyncPending = false;
+        }
+        if (stopped || (batch.isEmpty() && !fullSync)) {
+            return;
+        }
+
+        FtpIoExecutor.Operation<Integer> operation = fullSync
+            ? FtpIoExecutor.getDefault().submit("Synchronize " + remoteRoot, () -> {
+                FtpMirrorSync.Summary summary = sync.run(true);
+                return summary.getUploadedCount() + summary.getDeletedCount();
+            })
+            : FtpIoExecutor.getDefault().submit("Synchronize " + remoteRoot, () -> sync.syncPaths(batch));
+        flushOperation = operation;
+        try {
+            int changes = operation.get();
+            if (changes > 0) {
+                StatusDisplayer.getDefault().setStatusText("Synchronized " + changes + " changed files to "
+                    + remoteRoot);
+            }
+        } catch (InterruptedIOException e) {
+            // Stopped
+            return;
+        } catch (IOException | RuntimeException e) {
+            if (!stopped) {
+                NotificationDisplayer.getDefault().notify(
+                    "FTP Synchronization Error",
+                    FtpIcons.getNotificationIcon(),
+                    "Error synchronizing " + remoteRoot + ": " + e.getMessage(),
+                    null,
+                    NotificationDisplayer.Priority.HIGH
+                );
+            }
+            return;
+        } finally {
+            flushOperation = null;
+        }
+
+        List<String> failed = sync.drainFailures();
+        if (!failed.isEmpty() && !stopped) {
+            failed.forEach(failure -> System.err.println("Folder watch: " + failure));
+            NotificationDisplayer.getDefault().notify("FTP Synchronization Errors", FtpIcons.getNotificationIcon(),
+                failed.size() + " changes could not be synchronized to " + remoteRoot,
+                e -> FtpFolderDownload.showFailures("Failed uploads from " + sync.getLocalRoot() + " to "
+                    + remoteRoot, failed),
+                NotificationDisplayer.Priority.HIGH);
+        }
+    }
+}
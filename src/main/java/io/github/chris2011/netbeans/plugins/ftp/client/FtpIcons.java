@@ -1,14 +1,21 @@
 package io.github.chris2011.netbeans.plugins.ftp.client;
 
 import java.awt.Image;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
-import javax.swing.filechooser.FileSystemView;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeListener;
 
+import org.openide.util.ChangeSupport;
 import org.openide.util.ImageUtilities;
+import org.openide.util.RequestProcessor;
+import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.loaders.DataObject;
-import org.openide.loaders.DataObjectNotFoundException;
 
 /**
  * Central place for loading icons used by the FTP client module.
@@ -38,6 +45,22 @@ public final class FtpIcons {
     private static final Icon FOLDER_ICON = safeImage2Icon(FOLDER_IMAGE);
     private static final Icon FILE_ICON = safeImage2Icon(FILE_IMAGE);
 
+    private static final String[] PREWARM_EXTENSIONS = {
+        "txt", "html", "htm", "php", "js", "css", "json", "xml", "java", "properties",
+        "md", "sql", "sh", "yml", "png", "jpg", "gif", "svg", "zip"
+    };
+
+    private static final int MAX_EXTENSION_LENGTH = 8;
+    private static final int MAX_CACHED_EXTENSIONS = 256;
+
+    private static final RequestProcessor RP = new RequestProcessor(FtpIcons.class.getName(), 1);
+    private static final Map<String, Icon> ICONS_BY_EXTENSION = new ConcurrentHashMap<>();
+    private static final Set<String> RESOLVING = ConcurrentHashMap.newKeySet();
+    private static final ChangeSupport ICON_CHANGES = new ChangeSupport(FtpIcons.class);
+    private static final RequestProcessor.Task FIRE_CHANGE
+        = RP.create(() -> SwingUtilities.invokeLater(ICON_CHANGES::fireChange));
+    private static FileObject iconFileSystemRoot;
+
     private FtpIcons() {
     }
 
@@ -52,75 +75,194 @@ public final class FtpIcons {
 
     /**
      * Gets an appropriate icon for a file based on its extension using NetBeans DataObject system.
+     * <p>
+     * Icons are cached per extension. An extension seen for the first time is
+     * resolved on a background thread; until then the generic file icon is
+     * returned and listeners registered with {@link #addChangeListener} are
+     * notified on the EDT once the real icon is available, so callers can
+     * simply repaint.
      * @param filename the filename to get icon for
      * @return an Icon for the file type, matching Project/Files tab appearance
      */
     public static Icon getFileIconByExtension(String filename) {
-        if (filename == null || filename.isEmpty()) {
+        String extension = iconExtension(filename);
+        if (extension == null) {
             return getFileIcon();
         }
 
+        Icon icon = ICONS_BY_EXTENSION.get(extension);
+        if (icon != null) {
+            return icon;
+        }
+
+        resolveLater(extension);
+        return getFileIcon();
+    }
+
+    /**
+     * Image variant of {@link #getFileIconByExtension(String)}.
+     */
+    public static Image getFileImageByExtension(String filename) {
+        Icon icon = getFileIconByExtension(filename);
+        return icon == getFileIcon() ? getFileImage() : ImageUtilities.icon2Image(icon);
+    }
+
+    /**
+     * Whether the icon for {@code filename} is known, i.e. the result of
+     * {@link #getFileIconByExtension(String)} will not change any more.
+     */
+    public static boolean isFileIconResolved(String filename) {
+        String extension = iconExtension(filename);
+        return extension == null || ICONS_BY_EXTENSION.containsKey(extension);
+    }
+
+    /**
+     * Resolves the icons of common extensions in the background, so the first
+     * listing does not start with placeholders.
+     */
+    public static void prewarm() {
+        for (String extension : PREWARM_EXTENSIONS) {
+            resolveLater(extension);
+        }
+    }
+
+    public static void addChangeListener(ChangeListener listener) {
+        ICON_CHANGES.addChangeListener(listener);
+    }
+
+    public static void removeChangeListener(ChangeListener listener) {
+        ICON_CHANGES.removeChangeListener(listener);
+    }
+
+    private static void resolveLater(String extension) {
+        if (ICONS_BY_EXTENSION.containsKey(extension) || !RESOLVING.add(extension)) {
+            return;
+        }
+        RP.post(() -> {
+            try {
+                // Requests queued before the cache filled up get the generic icon
+                if (ICONS_BY_EXTENSION.size() < MAX_CACHED_EXTENSIONS) {
+                    ICONS_BY_EXTENSION.put(extension, resolveIcon(extension));
+                }
+            } finally {
+                RESOLVING.remove(extension);
+            }
+            // Coalesce the repaints of a burst of newly seen extensions
+            FIRE_CHANGE.schedule(50);
+        });
+    }
+
+    private static Icon resolveIcon(String extension) {
         try {
             // Create a temporary file object to get the proper NetBeans icon
-            String extension = getFileExtension(filename);
-            if (!extension.isEmpty()) {
-                // Try to get DataObject for this file type to get the proper icon
-                String tempFileName = "temp." + extension;
-                try {
-                    DataObject dob = DataObject.find(FileUtil.createMemoryFileSystem().getRoot().createData(tempFileName));
-                    Image icon = dob.getNodeDelegate().getIcon(java.beans.BeanInfo.ICON_COLOR_16x16);
-                    if (icon != null) {
-                        return ImageUtilities.image2Icon(icon);
-                    }
-                } catch (Exception e) {
-                    // Fallback to hardcoded icons
+            FileObject root = iconFileSystemRoot();
+            String tempFileName = "temp." + extension;
+            FileObject temp = root.getFileObject(tempFileName);
+            if (temp == null) {
+                temp = root.createData(tempFileName);
+            }
+            try {
+                DataObject dob = DataObject.find(temp);
+                Image icon = dob.getNodeDelegate().getIcon(java.beans.BeanInfo.ICON_COLOR_16x16);
+                if (icon != null) {
+                    return ImageUtilities.image2Icon(icon);
                 }
+            } finally {
+                // Keeps neither the file nor its DataObject alive
+                temp.delete();
             }
+        } catch (Exception e) {
+            // Fallback to hardcoded icons
+        }
 
-            // Fallback to specific known file types
-            String ext = extension.toLowerCase();
-            Image icon = null;
-
-            switch (ext) {
-                case "java":
-                    icon = ImageUtilities.loadImage("org/netbeans/modules/java/resources/class.gif", false);
-                    break;
-                case "js":
-                    icon = ImageUtilities.loadImage("org/netbeans/modules/javascript2/editor/resources/javascript_16.png", false);
-                    break;
-                case "html":
-                case "htm":
-                    icon = ImageUtilities.loadImage("org/netbeans/modules/html/resources/html.gif", false);
-                    break;
-                case "css":
-                    icon = ImageUtilities.loadImage("org/netbeans/modules/css/visual/resources/style_sheet_16.png", false);
-                    break;
-                case "xml":
-                    icon = ImageUtilities.loadImage("org/netbeans/modules/xml/resources/xmlObject.gif", false);
-                    break;
-                case "json":
-                    icon = ImageUtilities.loadImage("org/netbeans/modules/javascript2/editor/resources/json_16.png", false);
-                    break;
-                case "txt":
-                    icon = ImageUtilities.loadImage("org/openide/loaders/text.gif", false);
-                    break;
-                case "png":
-                case "jpg":
-                case "jpeg":
-                case "gif":
-                case "bmp":
-                    icon = ImageUtilities.loadImage("org/openide/loaders/image.gif", false);
-                    break;
-                default:
-                    icon = ImageUtilities.loadImage("org/openide/loaders/unknown.gif", false);
-                    break;
-            }
+        // Fallback to specific known file types
+        Image icon;
+
+        switch (extension) {
+            case "java":
+                icon = ImageUtilities.loadImage("org/netbeans/modules/java/resources/class.gif", false);
+                break;
+            case "js":
+                icon = ImageUtilities.loadImage("org/netbeans/modules/javascript2/editor/resources/javascript_16.png", false);
+                break;
+            case "html":
+            case "htm":
+                icon = ImageUtilities.loadImage("org/netbeans/modules/html/resources/html.gif", false);
+                break;
+            case "css":
+                icon = ImageUtilities.loadImage("org/netbeans/modules/css/visual/resources/style_sheet_16.png", false);
+                break;
+            case "xml":
+                icon = ImageUtilities.loadImage("org/netbeans/modules/xml/resources/xmlObject.gif", false);
+                break;
+            case "json":
+                icon = ImageUtilities.loadImage("org/netbeans/modules/javascript2/editor/resources/json_16.png", false);
+                break;
+            case "txt":
+                icon = ImageUtilities.loadImage("org/openide/loaders/text.gif", false);
+                break;
+            case "png":
+            case "jpg":
+            case "jpeg":
+            case "gif":
+            case "bmp":
+                icon = ImageUtilities.loadImage("org/openide/loaders/image.gif", false);
+                break;
+            default:
+                icon = ImageUtilities.loadImage("org/openide/loaders/unknown.gif", false);
+                break;
+        }
 
-            return icon != null ? ImageUtilities.image2Icon(icon) : getFileIcon();
+        return icon != null ? ImageUtilities.image2Icon(icon) : getFileIcon();
+    }
 
-        } catch (Exception e) {
-            return getFileIcon();
+    /**
+     * Only used from the single resolver thread.
+     */
+    private static FileObject iconFileSystemRoot() {
+        if (iconFileSystemRoot == null) {
+            iconFileSystemRoot = FileUtil.createMemoryFileSystem().getRoot();
+        }
+        return iconFileSystemRoot;
+    }
+
+    /**
+     * @return the lower case extension whose icon is shown for
+     *         {@code filename}, or {@code null} for the generic file icon
+     */
+    private static String iconExtension(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        String extension = getFileExtension(filename).toLowerCase(Locale.ROOT);
+        if (!isIconExtension(extension)) {
+            return null;
+        }
+        if (ICONS_BY_EXTENSION.size() >= MAX_CACHED_EXTENSIONS && !ICONS_BY_EXTENSION.containsKey(extension)) {
+            return null;
+        }
+        return extension;
+    }
+
+    /**
+     * Whether {@code extension} looks like a file type rather than e.g. the
+     * counter or date of a rotated log, {@code app.log.12345}, which would
+     * fill the cache with one entry per file.
+     */
+    private static boolean isIconExtension(String extension) {
+        if (extension.isEmpty() || extension.length() > MAX_EXTENSION_LENGTH) {
+            return false;
+        }
+        boolean letter = false;
+        for (int i = 0; i < extension.length(); i++) {
+            char c = extension.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                letter = true;
+            } else if (c < '0' || c > '9') {
+                return false;
+            }
         }
+        return letter;
     }
 
     private static String getFileExtension(String filename) {
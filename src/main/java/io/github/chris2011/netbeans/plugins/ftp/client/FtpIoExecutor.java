@@ -0,0 +1,303 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executor for blocking FTP I/O: connects, listings, transfers and
+ * keep-alives of all connections.
+ * <p>
+ * On Java 21 and later every operation gets its own virtual thread, so
+ * operations blocked on a slow server cost no platform thread. Older JDKs get
+ * a bounded pool of platform threads instead. The virtual thread API is looked
+ * up reflectively, because the module is compiled for Java 17.
+ * <p>
+ * Operations are cancelled structurally: {@link #fork} starts a child of the
+ * calling operation, and cancelling an operation cancels its children. A
+ * cancelled operation is interrupted; on a virtual thread that also aborts a
+ * blocking socket read.
+ */
+public final class FtpIoExecutor {
+
+    private static final int PLATFORM_THREADS = 64;
+    private static final FtpIoExecutor DEFAULT = new FtpIoExecutor();
+    private static final ThreadLocal<Operation<?>> CURRENT = new ThreadLocal<>();
+
+    /**
+     * A blocking task.
+     */
+    public interface IoTask<T> {
+
+        T call() throws IOException;
+    }
+
+    /**
+     * Handle of one submitted task.
+     */
+    public static final class Operation<T> {
+
+        private final String name;
+        private final Operation<?> parent;
+        private final List<Operation<?>> children = new ArrayList<>();
+        private final CompletableFuture<T> result = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                if (!super.cancel(mayInterruptIfRunning)) {
+                    return false;
+                }
+                abort();
+                return true;
+            }
+
+            @Override
+            public boolean completeExceptionally(Throwable ex) {
+                if (!super.completeExceptionally(ex)) {
+                    return false;
+                }
+                // Set by orTimeout
+                if (ex instanceof TimeoutException) {
+                    abort();
+                }
+                return true;
+            }
+        };
+        private Thread thread;
+
+        private Operation(String name, Operation<?> parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Completes with the result of the task. Cancelling it, or a timeout
+         * set with {@link CompletableFuture#orTimeout}, cancels the operation.
+         */
+        public CompletableFuture<T> getResult() {
+            return result;
+        }
+
+        /**
+         * Cancels this operation and all operations forked from it.
+         *
+         * @return {@code false} if it had finished already
+         */
+        public boolean cancel() {
+            return result.cancel(true);
+        }
+
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        /**
+         * Waits for the task and returns its result.
+         *
+         * @throws InterruptedIOException if the operation was cancelled, or
+         *                                the caller was interrupted, which
+         *                                cancels the operation
+         */
+        public T get() throws IOException {
+            try {
+                return result.get();
+            } catch (CancellationException e) {
+                throw new InterruptedIOException(name + " was cancelled");
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(name + " was interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        private void abort() {
+            List<Operation<?>> forked;
+            synchronized (this) {
+                forked = new ArrayList<>(children);
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+            forked.forEach(Operation::cancel);
+        }
+
+        private void addChild(Operation<?> child) {
+            synchronized (this) {
+                if (!result.isDone()) {
+                    children.add(child);
+                    return;
+                }
+            }
+            if (result.isCancelled()) {
+                child.cancel();
+            }
+        }
+
+        private synchronized void removeChild(Operation<?> child) {
+            children.remove(child);
+        }
+
+        private void run(IoTask<T> task) {
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+            CURRENT.set(this);
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                CURRENT.remove();
+                synchronized (this) {
+                    thread = null;
+                }
+                // A cancel may have raced with the end of the task; pool threads are reused
+                Thread.interrupted();
+                if (parent != null) {
+                    parent.removeChild(this);
+                }
+            }
+        }
+    }
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private FtpIoExecutor() {
+        ExecutorService virtualExecutor = createVirtualThreadExecutor();
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : createPlatformThreadExecutor();
+    }
+
+    public static FtpIoExecutor getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Starts {@code task} as a new top level operation.
+     */
+    public <T> Operation<T> submit(String name, IoTask<T> task) {
+        return start(name, null, task);
+    }
+
+    public Operation<Void> post(String name, Runnable task) {
+        return submit(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Starts {@code task} as a child of the operation running on the calling
+     * thread, so that it is cancelled together with it. Called from any other
+     * thread this is the same as {@link #submit}.
+     */
+    public <T> Operation<T> fork(String name, IoTask<T> task) {
+        return start(name, CURRENT.get(), task);
+    }
+
+    /**
+     * Operations submitted and not finished yet, queued ones included.
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return virtual;
+    }
+
+    /**
+     * Whether the operation running on the calling thread was cancelled.
+     */
+    static boolean isCurrentCancelled() {
+        Operation<?> current = CURRENT.get();
+        return current != null && current.isCancelled();
+    }
+
+    private <T> Operation<T> start(String name, Operation<?> parent, IoTask<T> task) {
+        Operation<T> operation = new Operation<>(name, parent);
+        if (parent != null) {
+            parent.addChild(operation);
+        }
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    operation.run(task);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            operation.result.completeExceptionally(e);
+        }
+        return operation;
+    }
+
+    /**
+     * @return {@code null} before Java 21
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "FTP I/O ", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available, or a preview feature on Java 19 and 20
+            return null;
+        }
+    }
+
+    private static ExecutorService createPlatformThreadExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "FTP I/O " + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recently seen directory listings of one connection, keyed by path.
+ * <p>
+ * Entries expire after {@link FtpSettings#getListingCacheTtlSeconds()} but are
+ * kept as last known listings until they are evicted. The
+ * cache is bounded by the total number of cached {@link FtpFile} entries, which
+ * keeps its memory use proportional to {@link FtpSettings#getListingCacheMaxEntries()};
+ * the least recently used listings are dropped first.
+ */
+public class FtpListingCache {
+
+    /**
+     * An immutable cached listing together with the time it was received.
+     */
+    public static final class Snapshot {
+
+        private final List<FtpFile> files;
+        private final long loadedAt;
+
+        Snapshot(List<FtpFile> files, long loadedAt) {
+            this.files = files;
+            this.loadedAt = loadedAt;
+        }
+
+        public List<FtpFile> getFiles() {
+            return files;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+    }
+
+    private final Map<String, Snapshot> listings = new LinkedHashMap<>(64, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long cachedEntries;
+
+    /**
+     * Returns the cached listing of {@code path} if it has not expired yet.
+     */
+    public List<FtpFile> get(String path) {
+        String key = normalize(path);
+        long ttl = FtpSettings.getListingCacheTtlSeconds() * 1000L;
+
+        synchronized (this) {
+            Snapshot listing = listings.get(key);
+            if (listing != null && System.currentTimeMillis() - listing.loadedAt <= ttl) {
+                hits.incrementAndGet();
+                return listing.files;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Whether {@link #get} would return a listing, without counting as a hit
+     * or a miss.
+     */
+    public synchronized boolean isFresh(String path) {
+        Snapshot listing = listings.get(normalize(path));
+        return listing != null
+            && System.currentTimeMillis() - listing.loadedAt <= FtpSettings.getListingCacheTtlSeconds() * 1000L;
+    }
+
+    /**
+     * Returns the last listing seen for {@code path} even if it has expired,
+     * for showing something while the server is asked again. Does not count
+     * as a hit or a miss.
+     */
+    public synchronized List<FtpFile> getLastKnown(String path) {
+        Snapshot listing = listings.get(normalize(path));
+        return listing != null ? listing.files : null;
+    }
+
+    public void put(String path, List<FtpFile> files) {
+        store(path, files, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds a listing read back from disk, keeping its original age.
+     */
+    void restore(String path, List<FtpFile> files, long loadedAt) {
+        store(path, files, loadedAt);
+    }
+
+    synchronized Map<String, Snapshot> snapshot() {
+        return new LinkedHashMap<>(listings);
+    }
+
+    private void store(String path, List<FtpFile> files, long loadedAt) {
+        String key = normalize(path);
+        long maxEntries = FtpSettings.getListingCacheMaxEntries();
+        if (files.size() > maxEntries) {
+            // Too large to cache, but the older listing must not be served instead
+            synchronized (this) {
+                remove(key);
+            }
+            return;
+        }
+        List<FtpFile> copy = Collections.unmodifiableList(new ArrayList<>(files));
+
+        synchronized (this) {
+            remove(key);
+            listings.put(key, new Snapshot(copy, loadedAt));
+            cachedEntries += copy.size();
+
+            Iterator<Map.Entry<String, Snapshot>> eldest = listings.entrySet().iterator();
+            while (cachedEntries > maxEntries && eldest.hasNext()) {
+                cachedEntries -= eldest.next().getValue().files.size();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets the listing of {@code directoryPath}, e.g. after we wrote into it.
+     */
+    public synchronized void invalidate(String directoryPath) {
+        remove(normalize(directoryPath));
+    }
+
+    public synchronized void clear() {
+        listings.clear();
+        cachedEntries = 0;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public synchronized int getListingCount() {
+        return listings.size();
+    }
+
+    public synchronized long getCachedEntryCount() {
+        return cachedEntries;
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private void remove(String key) {
+        Snapshot old = listings.remove(key);
+        if (old != null) {
+            cachedEntries -= old.files.size();
+        }
+    }
+
+    static String normalize(String path) {
+        if (path == null || path.isEmpty() || path.equals("/")) {
+            return "/";
+        }
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+}
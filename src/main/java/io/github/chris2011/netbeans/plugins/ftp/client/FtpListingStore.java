@@ -0,0 +1,160 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the last known directory listings of each connection on disk, so a
+ * reopened explorer can show them before the server has answered.
+ * <p>
+ * One file per connection id in {@code listings/} next to connections.json.
+ * Every listing starts with a {@code #path<TAB>loadedAt} line followed by one
+ * tab separated line per entry.
+ */
+final class FtpListingStore {
+
+    private static final String LISTING_PREFIX = "#";
+
+    private FtpListingStore() {
+    }
+
+    static void load(String connectionId, FtpListingCache cache) {
+        Path file = fileFor(connectionId);
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String path = null;
+            long loadedAt = 0;
+            List<FtpFile> files = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(LISTING_PREFIX)) {
+                    if (path != null) {
+                        cache.restore(path, files, loadedAt);
+                    }
+                    String[] header = split(line.substring(LISTING_PREFIX.length()));
+                    path = header[0];
+                    loadedAt = Long.parseLong(header[1]);
+                    files = new ArrayList<>();
+                } else if (path != null && !line.isEmpty()) {
+                    String[] f = split(line);
+                    files.add(FtpFile.restore(f[0], path, "d".equals(f[1]), Long.parseLong(f[2]),
+                        Long.parseLong(f[3]), f[4], f[5], f[6]));
+                }
+            }
+            if (path != null) {
+                cache.restore(path, files, loadedAt);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A damaged snapshot only costs us the instant first paint
+            System.err.println("Failed to load cached listings: " + e.getMessage());
+        }
+    }
+
+    static void save(String connectionId, FtpListingCache cache) {
+        Path file = fileFor(connectionId);
+        Map<String, FtpListingCache.Snapshot> listings = cache.snapshot();
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, FtpListingCache.Snapshot> listing : listings.entrySet()) {
+                    writer.write(LISTING_PREFIX + escape(listing.getKey()) + "\t" + listing.getValue().getLoadedAt());
+                    writer.newLine();
+                    for (FtpFile f : listing.getValue().getFiles()) {
+                        writer.write(escape(f.getName()));
+                        writer.write('\t');
+                        writer.write(f.isDirectory() ? "d" : "f");
+                        writer.write('\t');
+                        writer.write(Long.toString(f.getSize()));
+                        writer.write('\t');
+                        writer.write(Long.toString(f.getLastModifiedMillis()));
+                        writer.write('\t');
+                        writer.write(escape(f.getPermissions()));
+                        writer.write('\t');
+                        writer.write(escape(f.getOwner()));
+                        writer.write('\t');
+                        writer.write(escape(f.getGroup()));
+                        writer.newLine();
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to save cached listings: " + e.getMessage());
+        }
+    }
+
+    static void delete(String connectionId) {
+        try {
+            Files.deleteIfExists(fileFor(connectionId));
+        } catch (IOException e) {
+            // Ignore cleanup errors
+        }
+    }
+
+    private static Path fileFor(String connectionId) {
+        return FtpConnectionManager.getInstance().getConfigDirectory()
+            .resolve("listings").resolve(connectionId + ".txt");
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '#':
+                    sb.append("\\#");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                current.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields.toArray(new String[0]);
+    }
+}
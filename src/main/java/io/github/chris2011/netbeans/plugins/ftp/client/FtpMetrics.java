@@ -0,0 +1,357 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+import org.apache.commons.net.io.CopyStreamEvent;
+import org.apache.commons.net.io.CopyStreamListener;
+
+/**
+ * Latencies and counters of one {@link FtpClient}.
+ * <p>
+ * Every pooled session reports its commands through a
+ * {@link ProtocolCommandListener}; the time from sending a command to its
+ * first reply is kept in a histogram per command. Transfers report their data
+ * channel bytes through a {@link CopyStreamListener}. Recording is lock free
+ * and cheap enough to stay on all the time.
+ */
+public final class FtpMetrics {
+
+    /**
+     * Pseudo command for opening the control connection up to the greeting.
+     */
+    public static final String CONNECT = "CONNECT";
+
+    /**
+     * Pseudo command for a whole directory listing from the server, data
+     * connection included.
+     */
+    public static final String LISTING = "LISTING";
+
+    /**
+     * Pseudo command for opening a session: connect, login and whatever else
+     * is needed before the first real command.
+     */
+    public static final String HANDSHAKE = "HANDSHAKE";
+
+    /**
+     * Snapshot of the latencies of one command, in milliseconds.
+     */
+    public static final class CommandStats {
+
+        private final String command;
+        private final long count;
+        private final double mean;
+        private final double p50;
+        private final double p99;
+        private final double max;
+
+        CommandStats(String command, long count, double mean, double p50, double p99, double max) {
+            this.command = command;
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return mean;
+        }
+
+        public double getMedianMillis() {
+            return p50;
+        }
+
+        /**
+         * Upper bound of the 99th percentile, the histogram has power of two
+         * buckets.
+         */
+        public double getP99Millis() {
+            return p99;
+        }
+
+        public double getMaxMillis() {
+            return max;
+        }
+    }
+
+    /**
+     * Log2 histogram of microseconds; bucket {@code i} holds values below
+     * {@code 2^i} µs.
+     */
+    private static final class Histogram {
+
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalMicros.addAndGet(micros);
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+
+        double percentileMillis(double percentile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(1L << i, maxMicros.get()) / 1000.0;
+                }
+            }
+            return maxMicros.get() / 1000.0;
+        }
+
+        CommandStats snapshot(String command) {
+            long n = count.get();
+            return new CommandStats(command, n, n > 0 ? totalMicros.get() / 1000.0 / n : 0,
+                percentileMillis(0.5), percentileMillis(0.99), maxMicros.get() / 1000.0);
+        }
+    }
+
+    /**
+     * Counts the bytes of one transfer and records its throughput once it is
+     * finished.
+     */
+    final class TransferMeter implements CopyStreamListener {
+
+        private final boolean upload;
+        private final long started = System.nanoTime();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private TransferMeter(boolean upload) {
+            this.upload = upload;
+            activeTransfers.incrementAndGet();
+        }
+
+        @Override
+        public void bytesTransferred(CopyStreamEvent event) {
+            bytesTransferred(event.getTotalBytesTransferred(), event.getBytesTransferred(), event.getStreamSize());
+        }
+
+        @Override
+        public void bytesTransferred(long totalBytesTransferred, int bytesTransferred, long streamSize) {
+            bytes.addAndGet(bytesTransferred);
+            (upload ? bytesUploaded : bytesDownloaded).addAndGet(bytesTransferred);
+        }
+
+        void finish() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            activeTransfers.decrementAndGet();
+            long nanos = System.nanoTime() - started;
+            long transferred = bytes.get();
+            transfers.incrementAndGet();
+            transferBytes.addAndGet(transferred);
+            transferNanos.addAndGet(nanos);
+            if (nanos > 0) {
+                lastThroughput = transferred * 1_000_000_000L / nanos;
+            }
+        }
+
+        /**
+         * Ends a transfer that failed or was given up. Its bytes stay counted,
+         * but it counts neither as a transfer nor towards the throughput. Does
+         * nothing after {@link #finish}.
+         */
+        void abort() {
+            if (done.compareAndSet(false, true)) {
+                activeTransfers.decrementAndGet();
+            }
+        }
+    }
+
+    private final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong commandsSent = new AtomicLong();
+    private final AtomicLong negativeReplies = new AtomicLong();
+    private final AtomicLong failedOperations = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final AtomicLong transfers = new AtomicLong();
+    private final AtomicLong transferBytes = new AtomicLong();
+    private final AtomicLong transferNanos = new AtomicLong();
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+    private volatile long lastThroughput;
+    private volatile long lastHandshakeNanos;
+    private volatile int lastHandshakeRoundTrips;
+
+    FtpMetrics() {
+    }
+
+    /**
+     * A listener for one session; a session runs one command at a time.
+     */
+    ProtocolCommandListener newCommandListener() {
+        return new ProtocolCommandListener() {
+            private String pendingCommand;
+            private long sentAt;
+
+            @Override
+            public void protocolCommandSent(ProtocolCommandEvent event) {
+                commandsSent.incrementAndGet();
+                pendingCommand = event.getCommand().toUpperCase(Locale.ROOT);
+                sentAt = System.nanoTime();
+            }
+
+            @Override
+            public void protocolReplyReceived(ProtocolCommandEvent event) {
+                if (event.getReplyCode() >= 400) {
+                    negativeReplies.incrementAndGet();
+                }
+                // Only the first reply counts, e.g. 150 of RETR but not the final 226
+                String command = pendingCommand;
+                if (command != null) {
+                    pendingCommand = null;
+                    recordLatency(command, System.nanoTime() - sentAt);
+                }
+            }
+        };
+    }
+
+    TransferMeter startTransfer(boolean upload) {
+        return new TransferMeter(upload);
+    }
+
+    void recordLatency(String command, long nanos) {
+        latencies.computeIfAbsent(command, c -> new Histogram()).record(nanos);
+    }
+
+    /**
+     * @param roundTrips commands sent, plus one for the greeting
+     */
+    void recordHandshake(long nanos, int roundTrips) {
+        recordLatency(HANDSHAKE, nanos);
+        lastHandshakeNanos = nanos;
+        lastHandshakeRoundTrips = roundTrips;
+    }
+
+    void recordFailure() {
+        failedOperations.incrementAndGet();
+    }
+
+    /**
+     * Latencies of all commands seen so far, sorted by command.
+     */
+    public List<CommandStats> getCommandStats() {
+        List<CommandStats> result = new ArrayList<>();
+        latencies.forEach((command, histogram) -> result.add(histogram.snapshot(command)));
+        result.sort((a, b) -> a.getCommand().compareTo(b.getCommand()));
+        return result;
+    }
+
+    /**
+     * @return the latencies of {@code command}, all zero if it was never sent
+     */
+    public CommandStats getCommandStats(String command) {
+        Histogram histogram = latencies.get(command);
+        return histogram != null ? histogram.snapshot(command) : new CommandStats(command, 0, 0, 0, 0, 0);
+    }
+
+    public long getCommandsSent() {
+        return commandsSent.get();
+    }
+
+    /**
+     * Replies with a 4xx or 5xx code.
+     */
+    public long getNegativeReplies() {
+        return negativeReplies.get();
+    }
+
+    /**
+     * Operations that ended with an exception, e.g. a dropped connection.
+     */
+    public long getFailedOperations() {
+        return failedOperations.get();
+    }
+
+    public long getBytesDownloaded() {
+        return bytesDownloaded.get();
+    }
+
+    public long getBytesUploaded() {
+        return bytesUploaded.get();
+    }
+
+    public long getTransferCount() {
+        return transfers.get();
+    }
+
+    /**
+     * Transfers started and not finished or aborted yet.
+     */
+    public int getActiveTransfers() {
+        return activeTransfers.get();
+    }
+
+    /**
+     * Bytes per second over all finished transfers.
+     */
+    public long getAverageThroughput() {
+        long nanos = transferNanos.get();
+        return nanos > 0 ? transferBytes.get() * 1_000_000_000L / nanos : 0;
+    }
+
+    /**
+     * Bytes per second of the last finished transfer.
+     */
+    public long getLastThroughput() {
+        return lastThroughput;
+    }
+
+    public double getLastHandshakeMillis() {
+        return lastHandshakeNanos / 1_000_000.0;
+    }
+
+    /**
+     * Control channel round trips of the last handshake, the greeting included.
+     */
+    public int getLastHandshakeRoundTrips() {
+        return lastHandshakeRoundTrips;
+    }
+
+    public void reset() {
+        latencies.clear();
+        commandsSent.set(0);
+        negativeReplies.set(0);
+        failedOperations.set(0);
+        bytesDownloaded.set(0);
+        bytesUploaded.set(0);
+        transfers.set(0);
+        transferBytes.set(0);
+        transferNanos.set(0);
+        lastThroughput = 0;
+        lastHandshakeNanos = 0;
+        lastHandshakeRoundTrips = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.util.List;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+
+/**
+ * Shows the {@link FtpMetrics} of one connection.
+ */
+class FtpMetricsPanel extends JPanel {
+
+    private static final String[] COLUMNS = {"Command", "Count", "Mean (ms)", "Median (ms)", "p99 (ms)", "Max (ms)"};
+
+    private final FtpClient client;
+    private final JLabel summary = new JLabel();
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    FtpMetricsPanel(FtpClient client) {
+        super(new BorderLayout(0, 8));
+        this.client = client;
+
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(560, 260));
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refresh());
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            client.getMetrics().reset();
+            refresh();
+        });
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        buttons.add(refreshButton);
+        buttons.add(resetButton);
+
+        add(summary, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+        add(buttons, BorderLayout.SOUTH);
+        refresh();
+    }
+
+    static void show(FtpClient client) {
+        NotifyDescriptor descriptor = new NotifyDescriptor.Message(new FtpMetricsPanel(client),
+            NotifyDescriptor.PLAIN_MESSAGE);
+        descriptor.setTitle("Statistics for " + client.getConnection().getDisplayName());
+        DialogDisplayer.getDefault().notify(descriptor);
+    }
+
+    private void refresh() {
+        FtpMetrics metrics = client.getMetrics();
+        summary.setText("<html>Commands sent: " + metrics.getCommandsSent()
+            + ", negative replies: " + metrics.getNegativeReplies()
+            + ", failed operations: " + metrics.getFailedOperations()
+            + "<br>Downloaded: " + FtpTransfersTopComponent.formatBytes(metrics.getBytesDownloaded())
+            + ", uploaded: " + FtpTransfersTopComponent.formatBytes(metrics.getBytesUploaded())
+            + ", transfers: " + metrics.getTransferCount() + " (" + metrics.getActiveTransfers() + " running)"
+            + "<br>Throughput: " + FtpTransfersTopComponent.formatBytes(metrics.getAverageThroughput())
+            + "/s average, " + FtpTransfersTopComponent.formatBytes(metrics.getLastThroughput())
+            + "/s last transfer"
+            + "<br>Last handshake: " + format(metrics.getLastHandshakeMillis())
+            + " ms, " + metrics.getLastHandshakeRoundTrips() + " round trips</html>");
+
+        model.setRowCount(0);
+        List<FtpMetrics.CommandStats> stats = metrics.getCommandStats();
+        for (FtpMetrics.CommandStats s : stats) {
+            model.addRow(new Object[]{s.getCommand(), s.getCount(), format(s.getMeanMillis()),
+                format(s.getMedianMillis()), format(s.getP99Millis()), format(s.getMaxMillis())});
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format("%.1f", millis);
+    }
+}
@@ -0,0 +1,571 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.prefs.Preferences;
+import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
+import org.netbeans.api.progress.ProgressHandle;
+import org.netbeans.api.progress.ProgressHandleFactory;
+import org.openide.awt.NotificationDisplayer;
+import org.openide.awt.StatusDisplayer;
+import org.openide.util.NbPreferences;
+import org.openide.windows.WindowManager;
+
+/**
+ * Mirrors a local folder to a remote directory, uploading only what changed
+ * since the last sync.
+ * <p>
+ * An {@link FtpSyncManifest} remembers size, modification time and SHA-256 of
+ * every uploaded file. Files whose size and time match are skipped without
+ * being read; the others are hashed, and uploaded only if the hash differs
+ * too. Checking and uploading is done by one worker per pooled session but
+ * one, like {@link FtpFolderDownload}; the uploads are background transfers
+ * of the {@link FtpTransferQueue}. Remote directories are created only for
+ * paths the manifest does not know yet.
+ * <p>
+ * Orphans are files the manifest recorded but that no longer exist locally.
+ * Deleting them is optional; remote files that were never uploaded by a sync
+ * are left alone. Version control metadata is not synchronized.
+ */
+public final class FtpMirrorSync {
+
+    private static final Set<String> IGNORED_DIRECTORIES = Set.of(".git", ".hg", ".svn");
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Result of a finished sync.
+     */
+    public static final class Summary {
+
+        private final int uploaded;
+        private final long bytes;
+        private final int unchanged;
+        private final int deleted;
+        private final long elapsedNanos;
+        private final List<String> failures;
+
+        Summary(int uploaded, long bytes, int unchanged, int deleted, long elapsedNanos, List<String> failures) {
+            this.uploaded = uploaded;
+            this.bytes = bytes;
+            this.unchanged = unchanged;
+            this.deleted = deleted;
+            this.elapsedNanos = elapsedNanos;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public int getUploadedCount() {
+            return uploaded;
+        }
+
+        public long getUploadedBytes() {
+            return bytes;
+        }
+
+        public int getUnchangedCount() {
+            return unchanged;
+        }
+
+        public int getDeletedCount() {
+            return deleted;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        /**
+         * One line per path that could not be checked, uploaded or deleted.
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+    }
+
+    private interface PathTask {
+
+        void run(String path) throws IOException;
+    }
+
+    private final FtpClient client;
+    private final Path localRoot;
+    private final String remoteRoot;
+    private final FtpSyncManifest manifest;
+    private final int workers;
+    // Remote directories that exist, so uploads into them need no MKD
+    private final Set<String> knownDirectories = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger checked = new AtomicInteger();
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile int localFiles;
+    private volatile Runnable progressListener;
+
+    public FtpMirrorSync(FtpClient client, Path localRoot, String remoteRoot) {
+        this.client = client;
+        this.localRoot = localRoot.toAbsolutePath().normalize();
+        this.remoteRoot = remoteRoot;
+        this.manifest = FtpSyncManifest.load(client.getConnection().getId(), this.localRoot, remoteRoot);
+        this.workers = Math.max(1, client.getConnection().getMaxSessions() - 1);
+
+        // Every ancestor of an uploaded file exists as well
+        knownDirectories.add(remoteRoot);
+        for (String path : manifest.paths()) {
+            addAncestors(knownDirectories, remotePath(path));
+        }
+    }
+
+    /**
+     * Asks for a local folder and mirrors it to {@code directory}, reporting
+     * progress and a summary. The folder chosen last time for the same remote
+     * directory is preselected.
+     */
+    public static void syncFolder(FtpFile directory, FtpClient client) {
+        Preferences lastFolders = NbPreferences.forModule(FtpMirrorSync.class).node("mirrorFolders");
+        String key = client.getConnection().getId() + ":" + directory.getPath();
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Synchronize " + directory.getPath() + " from");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        String lastFolder = lastFolders.get(key, null);
+        if (lastFolder != null) {
+            chooser.setSelectedFile(new File(lastFolder));
+        }
+        JCheckBox deleteOrphans = new JCheckBox("Delete remote files removed locally");
+        chooser.setAccessory(deleteOrphans);
+        if (chooser.showDialog(WindowManager.getDefault().getMainWindow(), "Synchronize") != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        Path localRoot = chooser.getSelectedFile().toPath();
+        lastFolders.put(key, localRoot.toString());
+        boolean delete = deleteOrphans.isSelected();
+        FtpMirrorSync sync = new FtpMirrorSync(client, localRoot, directory.getPath());
+
+        AtomicReference<FtpIoExecutor.Operation<Summary>> operation = new AtomicReference<>();
+        ProgressHandle handle = ProgressHandleFactory.createHandle("Synchronizing " + directory.getPath(), () -> {
+            FtpIoExecutor.Operation<Summary> running = operation.get();
+            if (running != null) {
+                running.cancel();
+            }
+            return true;
+        });
+        sync.setProgressListener(() -> handle.progress(sync.getCheckedCount() + " of " + sync.getLocalFileCount()
+            + " files checked, " + sync.getUploadedCount() + " uploaded"));
+
+        handle.start();
+        operation.set(FtpIoExecutor.getDefault().submit("Synchronize " + directory.getPath(), () -> sync.run(delete)));
+        operation.get().getResult().whenCompleteAsync((summary, error) -> {
+            handle.finish();
+            if (summary != null) {
+                notifySummary(directory, localRoot, summary);
+            } else if (operation.get().isCancelled() || error instanceof InterruptedIOException) {
+                StatusDisplayer.getDefault().setStatusText("Synchronization of " + directory.getPath() + " cancelled");
+            } else {
+                NotificationDisplayer.getDefault().notify(
+                    "FTP Synchronization Error",
+                    FtpIcons.getNotificationIcon(),
+                    "Error synchronizing " + directory.getPath() + ": " + error.getMessage(),
+                    null,
+                    NotificationDisplayer.Priority.HIGH
+                );
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    private static void notifySummary(FtpFile directory, Path localRoot, Summary summary) {
+        String text = String.format("Uploaded %d files (%s), %d unchanged, %d deleted in %.1f s",
+            summary.getUploadedCount(), FtpTransfersTopComponent.formatBytes(summary.getUploadedBytes()),
+            summary.getUnchangedCount(), summary.getDeletedCount(), summary.getElapsedMillis() / 1000.0);
+        List<String> failed = summary.getFailures();
+        if (failed.isEmpty()) {
+            NotificationDisplayer.getDefault().notify("FTP Folder Synchronized", FtpIcons.getNotificationIcon(),
+                text, null, NotificationDisplayer.Priority.NORMAL);
+            return;
+        }
+
+        failed.forEach(failure -> System.err.println("Mirror sync: " + failure));
+        NotificationDisplayer.getDefault().notify("FTP Folder Synchronized with Errors", FtpIcons.getNotificationIcon(),
+            text + ", " + failed.size() + " failed",
+            e -> FtpFolderDownload.showFailures("Failed to synchronize " + localRoot + " to " + directory.getPath(),
+                failed),
+            NotificationDisplayer.Priority.HIGH);
+    }
+
+    /**
+     * Called from the workers after every checked or deleted file.
+     */
+    public void setProgressListener(Runnable listener) {
+        this.progressListener = listener;
+    }
+
+    public int getLocalFileCount() {
+        return localFiles;
+    }
+
+    public int getCheckedCount() {
+        return checked.get();
+    }
+
+    public int getUploadedCount() {
+        return uploaded.get();
+    }
+
+    /**
+     * Uploads new and changed files and blocks until done. The workers are
+     * forked from the calling {@link FtpIoExecutor} operation, so cancelling
+     * it stops them. The manifest keeps whatever was uploaded, also after a
+     * cancel.
+     *
+     * @param deleteOrphans whether to delete remote files whose local file
+     *                      was removed since they were uploaded
+     * @throws InterruptedIOException if the sync was cancelled
+     */
+    public Summary run(boolean deleteOrphans) throws IOException {
+        long started = System.nanoTime();
+        try {
+            List<String> paths = scanLocalFiles();
+            localFiles = paths.size();
+            forEachParallel(paths, path -> {
+                if (push(path)) {
+                    uploaded.incrementAndGet();
+                } else {
+                    unchanged.incrementAndGet();
+                }
+                checked.incrementAndGet();
+            });
+
+            if (deleteOrphans) {
+                Set<String> orphans = manifest.paths();
+                orphans.removeAll(paths);
+                forEachParallel(new ArrayList<>(orphans), path -> {
+                    deleteRemote(path);
+                    deleted.incrementAndGet();
+                });
+                removeEmptyDirectories(orphans);
+            }
+        } finally {
+            manifest.save();
+        }
+
+        return new Summary(uploaded.get(), bytes.get(), unchanged.get(), deleted.get(),
+            System.nanoTime() - started, new ArrayList<>(failures));
+    }
+
+    /**
+     * Uploads one local file unless the manifest shows it unchanged.
+     *
+     * @param path {@code /} separated path below the local root
+     * @return {@code false} if it was unchanged
+     * @throws NoSuchFileException if the local file does not exist
+     */
+    boolean push(String path) throws IOException {
+        Path local = localFile(path);
+        BasicFileAttributes attributes = Files.readAttributes(local, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        FtpSyncManifest.Entry known = manifest.get(path);
+        if (known != null && known.matches(size, lastModified)) {
+            return false;
+        }
+        String hash = hash(local);
+        if (known != null && known.size == size && known.hash.equals(hash)) {
+            // Touched, but not modified
+            manifest.put(path, new FtpSyncManifest.Entry(size, lastModified, hash));
+            return false;
+        }
+
+        String remote = remotePath(path);
+        ensureDirectory(FtpClient.parentOf(remote));
+        FtpTransfer transfer = FtpTransfer.upload(client, local, remote, FtpTransfer.Priority.BACKGROUND);
+        boolean uploaded;
+        try {
+            uploaded = FtpTransferQueue.getDefault().submit(transfer).await();
+        } catch (InterruptedIOException e) {
+            if (FtpIoExecutor.isCurrentCancelled() || Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            // Only this file was cancelled in the Transfers window
+            throw new IOException("Upload cancelled", e);
+        }
+        if (!uploaded) {
+            throw new IOException("The server refused the upload");
+        }
+        manifest.put(path, new FtpSyncManifest.Entry(size, lastModified, hash));
+        bytes.addAndGet(size);
+        client.invalidateListing(FtpClient.parentOf(remote));
+        return true;
+    }
+
+    /**
+     * Deletes the remote copy of a file that was uploaded before.
+     *
+     * @return {@code false} if the manifest does not know {@code path}
+     */
+    boolean deleteRemote(String path) throws IOException {
+        if (manifest.get(path) == null) {
+            return false;
+        }
+        String remote = remotePath(path);
+        if (!client.delete(remote, false) && client.stat(remote) != null) {
+            throw new IOException("The server refused to delete it");
+        }
+        manifest.remove(path);
+        return true;
+    }
+
+    /**
+     * Brings the remote copies of {@code paths} up to date, in parallel, and
+     * saves the manifest. Existing files are uploaded if changed; for missing
+     * ones the remote copy is deleted, and a missing directory stands for
+     * every uploaded file below it.
+     *
+     * @param paths {@code /} separated paths below the local root
+     * @return the number of files uploaded or deleted
+     */
+    int syncPaths(Collection<String> paths) throws IOException {
+        Set<String> work = new LinkedHashSet<>();
+        Set<String> known = manifest.paths();
+        for (String path : paths) {
+            Path local = localFile(path);
+            if (Files.isRegularFile(local) || known.contains(path)) {
+                work.add(path);
+            } else if (Files.notExists(local)) {
+                String prefix = path + "/";
+                for (String knownPath : known) {
+                    if (knownPath.startsWith(prefix)) {
+                        work.add(knownPath);
+                    }
+                }
+            }
+        }
+
+        AtomicInteger changes = new AtomicInteger();
+        try {
+            forEachParallel(new ArrayList<>(work), path -> {
+                Path local = localFile(path);
+                if (Files.isRegularFile(local)) {
+                    if (push(path)) {
+                        uploaded.incrementAndGet();
+                        changes.incrementAndGet();
+                    }
+                } else if (Files.notExists(local) && deleteRemote(path)) {
+                    deleted.incrementAndGet();
+                    changes.incrementAndGet();
+                }
+            });
+        } finally {
+            manifest.save();
+        }
+        return changes.get();
+    }
+
+    /**
+     * Returns and forgets the failures collected so far.
+     */
+    List<String> drainFailures() {
+        synchronized (failures) {
+            List<String> drained = new ArrayList<>(failures);
+            failures.clear();
+            return drained;
+        }
+    }
+
+    void saveManifest() {
+        manifest.save();
+    }
+
+    Path getLocalRoot() {
+        return localRoot;
+    }
+
+    /**
+     * @return the {@code /} separated path of {@code file} below the local
+     *         root, {@code null} if it is outside or ignored
+     */
+    String relativePath(Path file) {
+        Path relative = localRoot.relativize(file.toAbsolutePath().normalize());
+        if (relative.toString().isEmpty() || relative.startsWith("..")) {
+            return null;
+        }
+        StringBuilder path = new StringBuilder();
+        for (Path name : relative) {
+            if (IGNORED_DIRECTORIES.contains(name.toString())) {
+                return null;
+            }
+            if (path.length() > 0) {
+                path.append('/');
+            }
+            path.append(name);
+        }
+        return path.toString();
+    }
+
+    private Path localFile(String path) {
+        return localRoot.resolve(path.replace('/', localRoot.getFileSystem().getSeparator().charAt(0)));
+    }
+
+    private String remotePath(String path) {
+        return remoteRoot.endsWith("/") ? remoteRoot + path : remoteRoot + "/" + path;
+    }
+
+    private List<String> scanLocalFiles() throws IOException {
+        List<String> paths = new ArrayList<>();
+        Files.walkFileTree(localRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return IGNORED_DIRECTORIES.contains(String.valueOf(dir.getFileName())) && !dir.equals(localRoot)
+                    ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String path = relativePath(file);
+                if (attrs.isRegularFile() && path != null) {
+                    paths.add(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                failures.add(file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return paths;
+    }
+
+    private void ensureDirectory(String dir) throws IOException {
+        if (knownDirectories.contains(dir)) {
+            return;
+        }
+        ensureDirectory(FtpClient.parentOf(dir));
+        // Fails if another worker created it first, which is fine
+        client.createDirectory(dir);
+        knownDirectories.add(dir);
+    }
+
+    /**
+     * Removes the remote directories that only held orphans, deepest first.
+     * A directory that still has other content refuses RMD and stays.
+     */
+    private void removeEmptyDirectories(Set<String> orphans) throws IOException {
+        Set<String> keep = new HashSet<>();
+        keep.add(remoteRoot);
+        for (String path : manifest.paths()) {
+            addAncestors(keep, remotePath(path));
+        }
+        Set<String> candidates = new HashSet<>();
+        for (String path : orphans) {
+            String dir = FtpClient.parentOf(remotePath(path));
+            while (!keep.contains(dir) && candidates.add(dir)) {
+                dir = FtpClient.parentOf(dir);
+            }
+        }
+
+        List<String> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingInt(String::length).reversed());
+        for (String dir : sorted) {
+            try {
+                if (client.delete(dir, true)) {
+                    knownDirectories.remove(dir);
+                }
+            } catch (IOException e) {
+                if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+                    throw e;
+                }
+                failures.add(dir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void addAncestors(Set<String> directories, String remoteFile) {
+        String dir = FtpClient.parentOf(remoteFile);
+        while (directories.add(dir) && !dir.equals("/")) {
+            dir = FtpClient.parentOf(dir);
+        }
+    }
+
+    private void forEachParallel(List<String> paths, PathTask task) throws IOException {
+        ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>(paths);
+        List<FtpIoExecutor.Operation<Void>> operations = new ArrayList<>(workers);
+        for (int i = 0; i < Math.min(workers, paths.size()); i++) {
+            operations.add(FtpIoExecutor.getDefault().fork("Synchronize " + remoteRoot + " #" + i, () -> {
+                String path;
+                while ((path = queue.poll()) != null) {
+                    try {
+                        task.run(path);
+                    } catch (IOException | RuntimeException e) {
+                        if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+                            throw e;
+                        }
+                        failures.add(path + ": " + e.getMessage());
+                    }
+                    Runnable listener = progressListener;
+                    if (listener != null) {
+                        listener.run();
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (FtpIoExecutor.Operation<Void> operation : operations) {
+                operation.get();
+            }
+        } catch (IOException | RuntimeException e) {
+            operations.forEach(FtpIoExecutor.Operation::cancel);
+            throw e;
+        }
+    }
+
+    static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.commons.net.ftp.FTPClientConfig;
+
+/**
+ * What a server told us about itself: the FEAT list and the SYST reply.
+ * <p>
+ * Discovered on the first connect to a host and kept in the
+ * {@link FtpCapabilityStore}, so later connects can configure the listing
+ * parser and feature dependent code paths without asking again.
+ */
+public final class FtpServerCapabilities {
+
+    private final String systemType;
+    private final Map<String, String> features;
+    private final long discoveredAt;
+
+    private FtpServerCapabilities(String systemType, Map<String, String> features, long discoveredAt) {
+        this.systemType = systemType;
+        this.features = Collections.unmodifiableMap(features);
+        this.discoveredAt = discoveredAt;
+    }
+
+    /**
+     * @param systemType  the SYST reply, {@code null} if the server refused it
+     * @param featureLines the feature lines of the FEAT reply, e.g.
+     *                     {@code "MLST type*;size*;modify*;"}; lines without a
+     *                     leading space (the 211 header and footer) are skipped
+     */
+    static FtpServerCapabilities of(String systemType, List<String> featureLines, long discoveredAt) {
+        Map<String, String> features = new LinkedHashMap<>();
+        for (String line : featureLines) {
+            String feature = line.trim();
+            if (feature.isEmpty() || (line.charAt(0) != ' ' && Character.isDigit(line.charAt(0)))) {
+                continue;
+            }
+            int space = feature.indexOf(' ');
+            String name = (space < 0 ? feature : feature.substring(0, space)).toUpperCase(Locale.ROOT);
+            features.put(name, space < 0 ? "" : feature.substring(space + 1).trim());
+        }
+        return new FtpServerCapabilities(systemType, features, discoveredAt);
+    }
+
+    /**
+     * The features as FEAT lines, the input of {@link #of}.
+     */
+    List<String> getFeatureLines() {
+        List<String> lines = new ArrayList<>(features.size());
+        features.forEach((name, parameters) -> lines.add(parameters.isEmpty() ? name : name + " " + parameters));
+        return lines;
+    }
+
+    public String getSystemType() {
+        return systemType;
+    }
+
+    public long getDiscoveredAt() {
+        return discoveredAt;
+    }
+
+    public boolean hasFeature(String name) {
+        return features.containsKey(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return what follows the feature name in the FEAT reply, {@code null} if
+     *         the feature is missing
+     */
+    public String getFeatureParameters(String name) {
+        return features.get(name.toUpperCase(Locale.ROOT));
+    }
+
+    public boolean supportsMachineListing() {
+        return hasFeature("MLST");
+    }
+
+    /**
+     * The MLST facts, those marked with {@code *} are sent by default.
+     */
+    public String getMachineListingFacts() {
+        String facts = getFeatureParameters("MLST");
+        return facts != null ? facts : "";
+    }
+
+    public boolean supportsUtf8() {
+        return hasFeature("UTF8");
+    }
+
+    /**
+     * Whether {@code REST <offset>} works for stream mode transfers, which
+     * resumed and segmented transfers need.
+     */
+    public boolean supportsRestStream() {
+        String rest = getFeatureParameters("REST");
+        return rest != null && rest.toUpperCase(Locale.ROOT).contains("STREAM");
+    }
+
+    /**
+     * Algorithms of the HASH command, the selected one first, plus the older
+     * XMD5/XSHA commands as e.g. {@code "XMD5"}.
+     */
+    public List<String> getHashAlgorithms() {
+        List<String> algorithms = new ArrayList<>();
+        String hash = getFeatureParameters("HASH");
+        if (hash != null) {
+            for (String algorithm : hash.split(";")) {
+                String name = algorithm.trim();
+                if (name.endsWith("*")) {
+                    algorithms.add(0, name.substring(0, name.length() - 1));
+                } else if (!name.isEmpty()) {
+                    algorithms.add(name);
+                }
+            }
+        }
+        for (String command : new String[]{"XMD5", "XSHA1", "XSHA256", "XSHA512"}) {
+            if (hasFeature(command)) {
+                algorithms.add(command);
+            }
+        }
+        return algorithms;
+    }
+
+    /**
+     * Configuration for the listing parser that needs no SYST round trip,
+     * {@code null} if the system type is unknown.
+     */
+    public FTPClientConfig toClientConfig() {
+        return systemType != null ? new FTPClientConfig(systemType) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "SYST " + systemType + ", FEAT " + features.keySet();
+    }
+}
@@ -0,0 +1,264 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
+
+/**
+ * One authenticated control connection owned by a {@link FtpSessionPool}.
+ */
+class FtpSession extends FTPClient {
+
+    interface PageHandler {
+
+        /**
+         * @return {@code false} to stop reading the listing
+         */
+        boolean onPage(List<FTPFile> page) throws IOException;
+    }
+
+    private volatile long lastUsed = System.currentTimeMillis();
+    private volatile long lastKeepAlive;
+    private volatile boolean broken;
+    private FTPClientConfig clientConfig;
+    private FTPFileEntryParser listParser;
+    private boolean binaryMode;
+    private int commandCount;
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * A broken session has an unfinished command on its control connection
+     * and must not be handed out again.
+     */
+    boolean isBroken() {
+        return broken;
+    }
+
+    void markBroken() {
+        broken = true;
+    }
+
+    /**
+     * Last time the session was used or answered a keep-alive.
+     */
+    long getLastActivity() {
+        return Math.max(lastUsed, lastKeepAlive);
+    }
+
+    /**
+     * Sends NOOP so the server does not drop the idle control connection.
+     *
+     * @return {@code false} if the connection is dead, i.e. the server did not
+     *         answer positively within {@code timeoutMillis}
+     */
+    boolean sendKeepAlive(int timeoutMillis) {
+        try {
+            int previous = getSoTimeout();
+            setSoTimeout(timeoutMillis);
+            try {
+                if (!sendNoOp()) {
+                    return false;
+                }
+            } finally {
+                setSoTimeout(previous);
+            }
+            lastKeepAlive = System.currentTimeMillis();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Ends a download whose data connection was closed before the end of the
+     * file. Sends ABOR and reads both the reply to the transfer, usually 426,
+     * and the reply to ABOR, so the control connection is in sync again.
+     *
+     * @return {@code false} if the server did not answer as expected within
+     *         {@code timeoutMillis}; the session must be dropped then
+     */
+    boolean abortTransfer(int timeoutMillis) {
+        try {
+            int previous = getSoTimeout();
+            setSoTimeout(timeoutMillis);
+            try {
+                int transferReply = abor();
+                if (!FTPReply.isPositiveCompletion(transferReply) && !FTPReply.isNegativeTransient(transferReply)) {
+                    return false;
+                }
+                return FTPReply.isPositiveCompletion(getReply());
+            } finally {
+                setSoTimeout(previous);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Commands sent over this control connection so far.
+     */
+    int getCommandCount() {
+        return commandCount;
+    }
+
+    @Override
+    public int sendCommand(String command, String args) throws IOException {
+        commandCount++;
+        return super.sendCommand(command, args);
+    }
+
+    @Override
+    public boolean setFileType(int fileType) throws IOException {
+        boolean accepted = super.setFileType(fileType);
+        if (accepted) {
+            binaryMode = fileType == FTP.BINARY_FILE_TYPE;
+        }
+        return accepted;
+    }
+
+    /**
+     * Sends TYPE I unless this session is in binary mode already. Listings
+     * work in the default ASCII mode, so TYPE is deferred until the first
+     * command that needs it, saving a round trip per session that only lists.
+     */
+    void ensureBinaryMode() throws IOException {
+        if (!binaryMode && !setFileType(FTP.BINARY_FILE_TYPE)) {
+            throw new IOException("Server refused binary mode: " + getReplyString());
+        }
+    }
+
+    // Some servers refuse SIZE in ASCII mode, and ASCII mode would convert line ends
+
+    @Override
+    public String getSize(String pathname) throws IOException {
+        ensureBinaryMode();
+        return super.getSize(pathname);
+    }
+
+    @Override
+    public InputStream retrieveFileStream(String remote) throws IOException {
+        ensureBinaryMode();
+        return super.retrieveFileStream(remote);
+    }
+
+    @Override
+    public OutputStream storeFileStream(String remote) throws IOException {
+        ensureBinaryMode();
+        return super.storeFileStream(remote);
+    }
+
+    @Override
+    public OutputStream appendFileStream(String remote) throws IOException {
+        ensureBinaryMode();
+        return super.appendFileStream(remote);
+    }
+
+    @Override
+    public void configure(FTPClientConfig config) {
+        super.configure(config);
+        clientConfig = config;
+        listParser = null;
+    }
+
+    /**
+     * Sends MLSD or LIST and parses the reply while it is still arriving, so
+     * the first entries can be shown before the last byte has been received.
+     *
+     * @return {@code false} if the server refused the listing, before any
+     *         page was handed to {@code handler}
+     * @throws IOException if the listing failed after pages were handed out;
+     *                     retrying with another command would repeat them
+     */
+    boolean streamListing(String path, boolean machineListing, int pageSize, PageHandler handler)
+        throws IOException {
+
+        FTPFileEntryParser parser = machineListing ? MLSxEntryParser.getInstance() : listParser();
+        Socket socket = machineListing
+            ? _openDataConnection_(FTPCmd.MLSD, path)
+            : _openDataConnection_(FTPCmd.LIST, getListArguments(path));
+        if (socket == null) {
+            return false;
+        }
+
+        boolean complete = false;
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), getControlEncoding()))) {
+
+            List<String> lines = new ArrayList<>(pageSize);
+            boolean firstPage = true;
+            String entry;
+            while ((entry = parser.readNextEntry(reader)) != null) {
+                lines.add(entry);
+                if (lines.size() >= pageSize) {
+                    if (!handler.onPage(parse(parser, lines, firstPage))) {
+                        return true;
+                    }
+                    firstPage = false;
+                    lines = new ArrayList<>(pageSize);
+                }
+            }
+            if (!lines.isEmpty() && !handler.onPage(parse(parser, lines, firstPage))) {
+                return true;
+            }
+            complete = true;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore cleanup errors
+            }
+            // A listing abandoned half way leaves a transfer reply pending
+            broken = !complete;
+        }
+
+        if (!completePendingCommand()) {
+            throw new IOException("Listing of " + path + " failed: " + getReplyString().trim());
+        }
+        return true;
+    }
+
+    private static List<FTPFile> parse(FTPFileEntryParser parser, List<String> lines, boolean firstPage) {
+        // preParse inspects headers (MVS) and "total" lines, which only occur at the top
+        List<String> entries = firstPage ? parser.preParse(lines) : lines;
+        List<FTPFile> files = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            FTPFile file = parser.parseFTPEntry(entry);
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private FTPFileEntryParser listParser() throws IOException {
+        if (listParser == null) {
+            DefaultFTPFileEntryParserFactory factory = new DefaultFTPFileEntryParserFactory();
+            listParser = clientConfig != null
+                ? factory.createFileEntryParser(clientConfig)
+                : factory.createFileEntryParser(getSystemType());
+        }
+        return listParser;
+    }
+}
@@ -0,0 +1,449 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Bounded pool of authenticated control connections for one {@link FtpConnection}.
+ * <p>
+ * Every command sequence borrows its own session, so a long running transfer
+ * no longer blocks directory listings and two threads never talk over the
+ * same control socket. Sessions that stay unused longer than the idle timeout
+ * are logged out, except for the most recently used one.
+ * <p>
+ * Idle sessions get a NOOP every {@link FtpSettings#getKeepAliveIntervalSeconds()}
+ * seconds, so servers do not drop them. Sessions that do not answer are
+ * closed, and if none is left a new one is opened in the background, retried
+ * with exponential backoff, so the next operation does not pay for the
+ * handshake.
+ * <p>
+ * Borrowers run on virtual threads of the {@link FtpIoExecutor}, so waiting
+ * for a session uses a {@link ReentrantLock} rather than a monitor, which
+ * would pin the carrier thread on Java 21.
+ */
+class FtpSessionPool {
+
+    interface SessionFactory {
+
+        FtpSession open() throws IOException;
+    }
+
+    private static final RequestProcessor RP = new RequestProcessor("FtpSessionPool", 1, true);
+    private static final int KEEP_ALIVE_TIMEOUT = 10_000;
+    private static final long KEEP_ALIVE_POLL = 60_000;
+    private static final long BACKOFF_BASE = 500;
+    private static final long BACKOFF_MAX = 30_000;
+
+    private final SessionFactory factory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<FtpSession> idle = new ArrayDeque<>();
+    private final RequestProcessor.Task evictionTask;
+    private final RequestProcessor.Task keepAliveTask;
+    private int reconnectAttempts;
+
+    private int maxSize;
+    private int openCount;
+    private boolean closed;
+
+    FtpSessionPool(SessionFactory factory, int maxSize) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.evictionTask = RP.create(this::evictIdleSessions);
+        this.keepAliveTask = RP.create(() -> FtpIoExecutor.getDefault().post("FTP keep-alive", this::keepAlive));
+        scheduleEviction();
+        scheduleKeepAlive();
+    }
+
+    /**
+     * Delay before retry number {@code attempt}, starting at 0: exponential
+     * with a cap, and randomized by up to half so that clients dropped at the
+     * same time do not reconnect in lockstep.
+     */
+    static long backoffDelay(int attempt) {
+        long delay = Math.min(BACKOFF_MAX, BACKOFF_BASE << Math.min(attempt, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Returns an idle session or opens a new one. Blocks while all
+     * {@code maxSize} sessions are borrowed.
+     */
+    FtpSession borrow() throws IOException {
+        long deadline = System.currentTimeMillis() + FtpSettings.getSessionBorrowTimeoutSeconds() * 1000L;
+        List<FtpSession> stale = new ArrayList<>();
+
+        try {
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new IOException("Not connected to FTP server");
+                    }
+
+                    FtpSession session = idle.pollFirst();
+                    if (session != null) {
+                        if (session.isConnected()) {
+                            session.touch();
+                            return session;
+                        }
+                        openCount--;
+                        stale.add(session);
+                        continue;
+                    }
+
+                    if (openCount < maxSize) {
+                        openCount++;
+                        break;
+                    }
+
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IOException("Timed out waiting for a free FTP session");
+                    }
+                    try {
+                        available.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for a free FTP session", ex);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            stale.forEach(FtpSessionPool::closeQuietly);
+        }
+        return open();
+    }
+
+    /**
+     * Like {@link #borrow}, but never waits: returns {@code null} unless at
+     * least {@code reserve} more sessions could still be borrowed afterwards.
+     * For optional parallel work, which must not hold up browsing.
+     */
+    FtpSession tryBorrow(int reserve) throws IOException {
+        List<FtpSession> stale = new ArrayList<>();
+
+        try {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IOException("Not connected to FTP server");
+                }
+                while (true) {
+                    if (idle.size() + maxSize - openCount <= reserve) {
+                        return null;
+                    }
+
+                    FtpSession session = idle.pollFirst();
+                    if (session == null) {
+                        openCount++;
+                        break;
+                    }
+                    if (session.isConnected()) {
+                        session.touch();
+                        return session;
+                    }
+                    openCount--;
+                    stale.add(session);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            stale.forEach(FtpSessionPool::closeQuietly);
+        }
+        return open();
+    }
+
+    /**
+     * Opens a session for a slot already counted in {@code openCount}.
+     */
+    private FtpSession open() throws IOException {
+        try {
+            FtpSession session = factory.open();
+            session.touch();
+            return session;
+        } catch (IOException | RuntimeException ex) {
+            lock.lock();
+            try {
+                openCount--;
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Hands a healthy session back to the pool.
+     */
+    void release(FtpSession session) {
+        if (session == null) {
+            return;
+        }
+
+        boolean discard;
+        lock.lock();
+        try {
+            discard = closed || session.isBroken() || !session.isConnected() || openCount > maxSize;
+            if (discard) {
+                openCount--;
+            } else {
+                session.touch();
+                idle.addFirst(session);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (discard) {
+            closeQuietly(session);
+        }
+    }
+
+    /**
+     * Drops a session whose control connection is in an unknown state.
+     */
+    void invalidate(FtpSession session) {
+        if (session == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            openCount--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(session);
+    }
+
+    /**
+     * Closes all idle sessions, e.g. after one of them turned out to be
+     * dropped by the server, which usually happened to its siblings as well.
+     */
+    void closeIdle() {
+        List<FtpSession> toClose;
+        lock.lock();
+        try {
+            toClose = new ArrayList<>(idle);
+            openCount -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toClose.forEach(FtpSessionPool::closeQuietly);
+    }
+
+    void setMaxSize(int maxSize) {
+        lock.lock();
+        try {
+            this.maxSize = Math.max(1, maxSize);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getMaxSize() {
+        lock.lock();
+        try {
+            return maxSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getOpenCount() {
+        lock.lock();
+        try {
+            return openCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        List<FtpSession> toClose;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            openCount -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        evictionTask.cancel();
+        keepAliveTask.cancel();
+        toClose.forEach(FtpSessionPool::closeQuietly);
+    }
+
+    private void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - FtpSettings.getSessionIdleTimeoutSeconds() * 1000L;
+        List<FtpSession> evicted = new ArrayList<>();
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // The deque is ordered most recently used first; always keep the head.
+            Iterator<FtpSession> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > 1) {
+                FtpSession session = it.next();
+                if (session.getLastUsed() < cutoff || !session.isConnected()) {
+                    it.remove();
+                    openCount--;
+                    evicted.add(session);
+                }
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        evicted.forEach(FtpSessionPool::closeQuietly);
+        scheduleEviction();
+    }
+
+    private void keepAlive() {
+        int interval = FtpSettings.getKeepAliveIntervalSeconds();
+        if (interval <= 0) {
+            keepAliveTask.schedule((int) KEEP_ALIVE_POLL);
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - interval * 1000L;
+        List<FtpSession> due = new ArrayList<>();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // Take them out of the pool, nobody may borrow them during the NOOP
+            Iterator<FtpSession> it = idle.iterator();
+            while (it.hasNext()) {
+                FtpSession session = it.next();
+                if (session.getLastActivity() < cutoff) {
+                    it.remove();
+                    due.add(session);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (FtpSession session : due) {
+            if (!session.sendKeepAlive(KEEP_ALIVE_TIMEOUT)) {
+                invalidate(session);
+                continue;
+            }
+            boolean discard;
+            lock.lock();
+            try {
+                // Unlike release() this keeps the last use time for eviction
+                discard = closed;
+                if (!discard) {
+                    idle.addLast(session);
+                    available.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (discard) {
+                closeQuietly(session);
+            }
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!reopenIfEmpty()) {
+            keepAliveTask.schedule((int) backoffDelay(reconnectAttempts++));
+            return;
+        }
+        reconnectAttempts = 0;
+        keepAliveTask.schedule(Math.max(1000, interval * 1000));
+    }
+
+    /**
+     * Opens a session if the keep-alives found all of them dead.
+     *
+     * @return {@code false} if that failed
+     */
+    private boolean reopenIfEmpty() {
+        lock.lock();
+        try {
+            if (closed || openCount > 0) {
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            release(borrow());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void scheduleKeepAlive() {
+        int interval = FtpSettings.getKeepAliveIntervalSeconds();
+        keepAliveTask.schedule(interval > 0 ? Math.max(1000, interval * 1000) : (int) KEEP_ALIVE_POLL);
+    }
+
+    private void scheduleEviction() {
+        int delay = Math.max(1000, FtpSettings.getSessionIdleTimeoutSeconds() * 500);
+        evictionTask.schedule(delay);
+    }
+
+    static void closeQuietly(FtpSession session) {
+        if (session.isConnected()) {
+            try {
+                session.logout();
+            } catch (IOException e) {
+                // Ignore cleanup errors
+            }
+            try {
+                session.disconnect();
+            } catch (IOException e) {
+                // Ignore cleanup errors
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.util.prefs.Preferences;
+import org.openide.util.NbPreferences;
+
+/**
+ * Module wide settings which are not tied to a single connection.
+ */
+public final class FtpSettings {
+
+    private static final String KEY_SESSION_IDLE_TIMEOUT = "sessionIdleTimeoutSeconds";
+    private static final String KEY_SESSION_BORROW_TIMEOUT = "sessionBorrowTimeoutSeconds";
+    private static final String KEY_LISTING_CACHE_TTL = "listingCacheTtlSeconds";
+    private static final String KEY_LISTING_CACHE_MAX_ENTRIES = "listingCacheMaxEntries";
+    private static final String KEY_DOWNLOAD_SEGMENTS = "downloadSegments";
+    private static final String KEY_MAX_CONCURRENT_TRANSFERS = "maxConcurrentTransfers";
+    private static final String KEY_MAX_TRANSFERS_PER_CONNECTION = "maxTransfersPerConnection";
+    private static final String KEY_SEGMENTED_DOWNLOAD_MIN_SIZE = "segmentedDownloadMinSize";
+    private static final String KEY_MAX_DOWNLOAD_RATE = "maxDownloadRateKb";
+    private static final String KEY_KEEP_ALIVE_INTERVAL = "keepAliveIntervalSeconds";
+    private static final String KEY_CONNECTION_RETRIES = "connectionRetries";
+    private static final String KEY_FAST_CONNECT = "fastConnect";
+    private static final String KEY_MAX_UPLOAD_RATE = "maxUploadRateKb";
+
+    private static final int DEFAULT_SESSION_IDLE_TIMEOUT = 120;
+    private static final int DEFAULT_SESSION_BORROW_TIMEOUT = 60;
+    private static final int DEFAULT_LISTING_CACHE_TTL = 60;
+    private static final int DEFAULT_LISTING_CACHE_MAX_ENTRIES = 200_000;
+    private static final int DEFAULT_DOWNLOAD_SEGMENTS = 4;
+    private static final int DEFAULT_MAX_CONCURRENT_TRANSFERS = 4;
+    private static final int DEFAULT_MAX_TRANSFERS_PER_CONNECTION = 2;
+    private static final long DEFAULT_SEGMENTED_DOWNLOAD_MIN_SIZE = 32L * 1024 * 1024;
+    private static final int DEFAULT_KEEP_ALIVE_INTERVAL = 60;
+    private static final int DEFAULT_CONNECTION_RETRIES = 3;
+
+    private FtpSettings() {
+    }
+
+    private static Preferences preferences() {
+        return NbPreferences.forModule(FtpSettings.class);
+    }
+
+    /**
+     * Seconds an unused pooled session stays open before it is logged out.
+     */
+    public static int getSessionIdleTimeoutSeconds() {
+        return preferences().getInt(KEY_SESSION_IDLE_TIMEOUT, DEFAULT_SESSION_IDLE_TIMEOUT);
+    }
+
+    public static void setSessionIdleTimeoutSeconds(int seconds) {
+        preferences().putInt(KEY_SESSION_IDLE_TIMEOUT, Math.max(1, seconds));
+    }
+
+    /**
+     * Seconds a caller waits for a free session once the pool is exhausted.
+     */
+    public static int getSessionBorrowTimeoutSeconds() {
+        return preferences().getInt(KEY_SESSION_BORROW_TIMEOUT, DEFAULT_SESSION_BORROW_TIMEOUT);
+    }
+
+    public static void setSessionBorrowTimeoutSeconds(int seconds) {
+        preferences().putInt(KEY_SESSION_BORROW_TIMEOUT, Math.max(1, seconds));
+    }
+
+    /**
+     * Seconds a cached directory listing is served without asking the server.
+     */
+    public static int getListingCacheTtlSeconds() {
+        return preferences().getInt(KEY_LISTING_CACHE_TTL, DEFAULT_LISTING_CACHE_TTL);
+    }
+
+    public static void setListingCacheTtlSeconds(int seconds) {
+        preferences().putInt(KEY_LISTING_CACHE_TTL, Math.max(0, seconds));
+    }
+
+    /**
+     * Upper bound of file entries kept in the listing cache of one connection.
+     */
+    public static int getListingCacheMaxEntries() {
+        return preferences().getInt(KEY_LISTING_CACHE_MAX_ENTRIES, DEFAULT_LISTING_CACHE_MAX_ENTRIES);
+    }
+
+    public static void setListingCacheMaxEntries(int entries) {
+        preferences().putInt(KEY_LISTING_CACHE_MAX_ENTRIES, Math.max(0, entries));
+    }
+
+    /**
+     * Number of sessions a large download is split across, bounded by the
+     * session limit of the connection. 1 disables segmented downloads.
+     */
+    public static int getDownloadSegments() {
+        return preferences().getInt(KEY_DOWNLOAD_SEGMENTS, DEFAULT_DOWNLOAD_SEGMENTS);
+    }
+
+    public static void setDownloadSegments(int segments) {
+        preferences().putInt(KEY_DOWNLOAD_SEGMENTS, Math.max(1, segments));
+    }
+
+    /**
+     * Files smaller than this many bytes are always downloaded as one stream.
+     */
+    public static long getSegmentedDownloadMinSize() {
+        return preferences().getLong(KEY_SEGMENTED_DOWNLOAD_MIN_SIZE, DEFAULT_SEGMENTED_DOWNLOAD_MIN_SIZE);
+    }
+
+    public static void setSegmentedDownloadMinSize(long bytes) {
+        preferences().putLong(KEY_SEGMENTED_DOWNLOAD_MIN_SIZE, Math.max(1, bytes));
+    }
+
+    /**
+     * Transfers the {@link FtpTransferQueue} runs at the same time over all connections.
+     */
+    public static int getMaxConcurrentTransfers() {
+        return preferences().getInt(KEY_MAX_CONCURRENT_TRANSFERS, DEFAULT_MAX_CONCURRENT_TRANSFERS);
+    }
+
+    public static void setMaxConcurrentTransfers(int transfers) {
+        preferences().putInt(KEY_MAX_CONCURRENT_TRANSFERS, Math.max(1, transfers));
+    }
+
+    /**
+     * Transfers the {@link FtpTransferQueue} runs at the same time for one connection.
+     */
+    public static int getMaxTransfersPerConnection() {
+        return preferences().getInt(KEY_MAX_TRANSFERS_PER_CONNECTION, DEFAULT_MAX_TRANSFERS_PER_CONNECTION);
+    }
+
+    public static void setMaxTransfersPerConnection(int transfers) {
+        preferences().putInt(KEY_MAX_TRANSFERS_PER_CONNECTION, Math.max(1, transfers));
+    }
+
+    /**
+     * Cap in KB/s for all downloads together, 0 for unlimited. Changes apply
+     * to running transfers.
+     */
+    public static int getMaxDownloadRate() {
+        return preferences().getInt(KEY_MAX_DOWNLOAD_RATE, 0);
+    }
+
+    public static void setMaxDownloadRate(int kilobytesPerSecond) {
+        preferences().putInt(KEY_MAX_DOWNLOAD_RATE, Math.max(0, kilobytesPerSecond));
+        BandwidthLimiter.GLOBAL_DOWNLOAD.setRate(getMaxDownloadRate() * 1024L);
+    }
+
+    /**
+     * Cap in KB/s for all uploads together, 0 for unlimited. Changes apply
+     * to running transfers.
+     */
+    public static int getMaxUploadRate() {
+        return preferences().getInt(KEY_MAX_UPLOAD_RATE, 0);
+    }
+
+    public static void setMaxUploadRate(int kilobytesPerSecond) {
+        preferences().putInt(KEY_MAX_UPLOAD_RATE, Math.max(0, kilobytesPerSecond));
+        BandwidthLimiter.GLOBAL_UPLOAD.setRate(getMaxUploadRate() * 1024L);
+    }
+
+    /**
+     * Seconds between NOOPs on idle pooled sessions, 0 to disable keep-alives.
+     */
+    public static int getKeepAliveIntervalSeconds() {
+        return preferences().getInt(KEY_KEEP_ALIVE_INTERVAL, DEFAULT_KEEP_ALIVE_INTERVAL);
+    }
+
+    public static void setKeepAliveIntervalSeconds(int seconds) {
+        preferences().putInt(KEY_KEEP_ALIVE_INTERVAL, Math.max(0, seconds));
+    }
+
+    /**
+     * How often an idempotent operation is retried on a fresh session after
+     * the connection dropped.
+     */
+    public static int getConnectionRetries() {
+        return preferences().getInt(KEY_CONNECTION_RETRIES, DEFAULT_CONNECTION_RETRIES);
+    }
+
+    public static void setConnectionRetries(int retries) {
+        preferences().putInt(KEY_CONNECTION_RETRIES, Math.max(0, retries));
+    }
+
+    /**
+     * Whether connecting defers TYPE I until the first transfer and, unless a
+     * listing of it is known, lists the root directory on the freshly logged
+     * in session in the background.
+     */
+    public static boolean isFastConnect() {
+        return preferences().getBoolean(KEY_FAST_CONNECT, true);
+    }
+
+    public static void setFastConnect(boolean fastConnect) {
+        preferences().putBoolean(KEY_FAST_CONNECT, fastConnect);
+    }
+}
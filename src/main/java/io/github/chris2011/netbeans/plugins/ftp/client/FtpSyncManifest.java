@@ -0,0 +1,147 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What {@link FtpMirrorSync} last uploaded from one local folder to one
+ * remote directory: size, modification time and SHA-256 of every file, keyed
+ * by its {@code /} separated path below both roots.
+ * <p>
+ * One file per connection and pair of folders in {@code sync/} next to
+ * connections.json. It starts with a {@code #local<TAB>remote} line followed
+ * by one {@code path<TAB>size<TAB>mtime<TAB>sha256} line per file.
+ */
+final class FtpSyncManifest {
+
+    private static final String HEADER_PREFIX = "#";
+
+    static final class Entry {
+
+        final long size;
+        final long lastModified;
+        final String hash;
+
+        Entry(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        /**
+         * Whether a local file with these attributes is unchanged, without
+         * reading it.
+         */
+        boolean matches(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+
+    private final Path file;
+    private final Path localRoot;
+    private final String remoteRoot;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty;
+
+    private FtpSyncManifest(Path file, Path localRoot, String remoteRoot) {
+        this.file = file;
+        this.localRoot = localRoot;
+        this.remoteRoot = remoteRoot;
+    }
+
+    static FtpSyncManifest load(String connectionId, Path localRoot, String remoteRoot) {
+        String name = connectionId + "-" + Integer.toHexString((localRoot + "\n" + remoteRoot).hashCode()) + ".txt";
+        return load(FtpConnectionManager.getInstance().getConfigDirectory().resolve("sync").resolve(name),
+            localRoot, remoteRoot);
+    }
+
+    static FtpSyncManifest load(Path file, Path localRoot, String remoteRoot) {
+        FtpSyncManifest manifest = new FtpSyncManifest(file, localRoot, remoteRoot);
+        manifest.read();
+        return manifest;
+    }
+
+    synchronized Entry get(String path) {
+        return entries.get(path);
+    }
+
+    synchronized void put(String path, Entry entry) {
+        entries.put(path, entry);
+        dirty = true;
+    }
+
+    synchronized void remove(String path) {
+        if (entries.remove(path) != null) {
+            dirty = true;
+        }
+    }
+
+    synchronized Set<String> paths() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    private void read() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith(HEADER_PREFIX)) {
+                    continue;
+                }
+                String[] f = FtpListingStore.split(line);
+                entries.put(f[0], new Entry(Long.parseLong(f[1]), Long.parseLong(f[2]), f[3]));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Without a manifest the next sync uploads everything again
+            System.err.println("Failed to load sync manifest: " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Writes the manifest if it changed since the last save.
+     */
+    void save() {
+        Map<String, Entry> snapshot;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            snapshot = new HashMap<>(entries);
+            dirty = false;
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER_PREFIX + FtpListingStore.escape(localRoot.toString()) + "\t"
+                    + FtpListingStore.escape(remoteRoot));
+                writer.newLine();
+                for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                    Entry e = entry.getValue();
+                    writer.write(FtpListingStore.escape(entry.getKey()) + "\t" + e.size + "\t" + e.lastModified
+                        + "\t" + e.hash);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to save sync manifest: " + e.getMessage());
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+}
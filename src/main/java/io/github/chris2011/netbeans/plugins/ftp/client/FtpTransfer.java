@@ -0,0 +1,291 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * One upload or download handled by the {@link FtpTransferQueue}.
+ * <p>
+ * The result completes with {@code true} when the transfer finished,
+ * {@code false} when the server refused it, exceptionally with the
+ * {@link IOException} that stopped it, or is cancelled.
+ */
+public final class FtpTransfer {
+
+    public enum Direction {
+        DOWNLOAD, UPLOAD
+    }
+
+    /**
+     * Interactive transfers, e.g. opening a file, are started before
+     * background work such as auto-saves or resumed transfers.
+     */
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    public enum State {
+        QUEUED, RUNNING, PAUSED, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private static final long RATE_WINDOW = 1000;
+
+    private final FtpClient client;
+    private final Direction direction;
+    private final String remotePath;
+    private final Path localPath;
+    private final long expectedSize;
+    private final Priority priority;
+    private final FtpFile listedFile;
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    private volatile State state = State.QUEUED;
+    private volatile long bytesTransferred;
+    private volatile long bytesPerSecond;
+    private volatile String error;
+    private volatile boolean pauseRequested;
+    private volatile boolean cancelRequested;
+    private volatile FtpClient.TransferListener progressListener;
+
+    // Only touched by the thread running the transfer
+    private long rateWindowStart;
+    private long rateWindowBytes;
+
+    long sequence;
+
+    private FtpTransfer(FtpClient client, Direction direction, String remotePath, Path localPath,
+        long expectedSize, Priority priority, FtpFile listedFile) {
+        this.client = client;
+        this.listedFile = listedFile;
+        this.direction = direction;
+        this.remotePath = remotePath;
+        this.localPath = localPath;
+        this.expectedSize = expectedSize;
+        this.priority = priority;
+    }
+
+    /**
+     * @param expectedSize size from the listing, 0 if unknown
+     */
+    public static FtpTransfer download(FtpClient client, String remotePath, Path localPath,
+        long expectedSize, Priority priority) {
+        return new FtpTransfer(client, Direction.DOWNLOAD, remotePath, localPath, expectedSize, priority, null);
+    }
+
+    /**
+     * Downloads a file of a listing, see {@link FtpClient#download(FtpFile, Path, FtpClient.TransferListener)}.
+     */
+    public static FtpTransfer download(FtpClient client, FtpFile file, Path localPath, Priority priority) {
+        return new FtpTransfer(client, Direction.DOWNLOAD, file.getPath(), localPath, file.getSize(), priority, file);
+    }
+
+    public static FtpTransfer upload(FtpClient client, Path localPath, String remotePath, Priority priority) {
+        return new FtpTransfer(client, Direction.UPLOAD, remotePath, localPath, localPath.toFile().length(), priority,
+            null);
+    }
+
+    /**
+     * Additionally reports the progress to {@code listener}, which can also
+     * cancel the transfer by returning {@code false}.
+     */
+    public void setProgressListener(FtpClient.TransferListener listener) {
+        this.progressListener = listener;
+    }
+
+    public FtpClient getClient() {
+        return client;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    public Path getLocalPath() {
+        return localPath;
+    }
+
+    public String getName() {
+        int slash = remotePath.lastIndexOf('/');
+        return slash >= 0 ? remotePath.substring(slash + 1) : remotePath;
+    }
+
+    public long getExpectedSize() {
+        return expectedSize;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Throughput over the last second, 0 unless the transfer is running.
+     */
+    public long getBytesPerSecond() {
+        return state == State.RUNNING ? bytesPerSecond : 0;
+    }
+
+    /**
+     * Why the transfer failed, {@code null} otherwise.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public CompletableFuture<Boolean> getResult() {
+        return result;
+    }
+
+    /**
+     * Blocks until the transfer is finished, for callers that used to run
+     * transfers on their own thread.
+     *
+     * @return {@code false} if the server refused the transfer
+     * @throws InterruptedIOException if the transfer was cancelled
+     */
+    public boolean await() throws IOException {
+        try {
+            return result.get();
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Transfer cancelled");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            FtpTransferQueue.getDefault().cancel(this);
+            throw new InterruptedIOException("Transfer interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    String getConnectionId() {
+        return client.getConnection().getId();
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    boolean isPauseRequested() {
+        return pauseRequested;
+    }
+
+    void requestPause() {
+        pauseRequested = true;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    /**
+     * Runs the transfer on the calling thread.
+     */
+    boolean execute() throws IOException {
+        pauseRequested = false;
+        rateWindowStart = System.currentTimeMillis();
+        rateWindowBytes = bytesTransferred;
+
+        FtpClient.TransferListener listener = new FtpClient.TransferListener() {
+            @Override
+            public boolean transferred(long bytes) {
+                record(bytes);
+                FtpClient.TransferListener progress = progressListener;
+                return !cancelRequested && !pauseRequested
+                    && (progress == null || progress.transferred(bytes));
+            }
+
+            @Override
+            public void restarted() {
+                record(0);
+                rateWindowStart = System.currentTimeMillis();
+                rateWindowBytes = 0;
+                FtpClient.TransferListener progress = progressListener;
+                if (progress != null) {
+                    progress.restarted();
+                }
+            }
+
+            @Override
+            public boolean isResumable() {
+                return pauseRequested && !cancelRequested;
+            }
+        };
+
+        FtpFlightRecorderEvents.Transfer event = new FtpFlightRecorderEvents.Transfer();
+        event.begin();
+        long startBytes = bytesTransferred;
+        String outcome = FtpFlightRecorderEvents.FAILED;
+        try {
+            boolean completed;
+            if (direction == Direction.UPLOAD) {
+                completed = client.upload(localPath, remotePath, listener);
+            } else if (listedFile != null) {
+                completed = client.download(listedFile, localPath, listener);
+            } else {
+                completed = client.download(remotePath, localPath, expectedSize, listener);
+            }
+            outcome = completed ? FtpFlightRecorderEvents.SUCCESS : FtpFlightRecorderEvents.REFUSED;
+            return completed;
+        } catch (InterruptedIOException e) {
+            // A timeout is a dropped connection, not a cancelled transfer
+            if (!(e instanceof SocketTimeoutException)) {
+                outcome = pauseRequested ? FtpFlightRecorderEvents.PAUSED : FtpFlightRecorderEvents.CANCELLED;
+            }
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.connectionId = getConnectionId();
+                event.direction = direction.name();
+                event.path = remotePath;
+                event.localPath = localPath.toString();
+                event.bytes = Math.max(0, bytesTransferred - startBytes);
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private void record(long bytes) {
+        bytesTransferred = bytes;
+        long now = System.currentTimeMillis();
+        long elapsed = now - rateWindowStart;
+        if (elapsed >= RATE_WINDOW) {
+            bytesPerSecond = (bytes - rateWindowBytes) * 1000 / elapsed;
+            rateWindowStart = now;
+            rateWindowBytes = bytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return direction + " " + remotePath + " (" + state + ")";
+    }
+}
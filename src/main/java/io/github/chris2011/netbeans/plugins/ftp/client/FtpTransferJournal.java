@@ -0,0 +1,297 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Unfinished transfers, kept in {@code transfers.journal} next to
+ * connections.json so they can be resumed after a dropped connection or an
+ * IDE restart.
+ * <p>
+ * A download entry remembers the remote SIZE and MDTM replies; it is only
+ * resumed while both are unchanged. An upload entry remembers the size and
+ * modification time of the local file instead, the resume offset then comes
+ * from the remote SIZE. A segmented download remembers how far each of its
+ * segments got instead of a single offset.
+ */
+final class FtpTransferJournal {
+
+    enum Direction {
+        DOWNLOAD, UPLOAD
+    }
+
+    /**
+     * One unfinished transfer.
+     */
+    static final class Entry {
+
+        private final String id;
+        private final String connectionId;
+        private final Direction direction;
+        private final String remotePath;
+        private final Path localPath;
+        private final String size;
+        private final String modified;
+        private volatile long offset;
+        private final AtomicLongArray segments;
+
+        private Entry(String id, String connectionId, Direction direction, String remotePath,
+            Path localPath, String size, String modified, long offset, AtomicLongArray segments) {
+            this.id = id;
+            this.connectionId = connectionId;
+            this.direction = direction;
+            this.remotePath = remotePath;
+            this.localPath = localPath;
+            this.size = size;
+            this.modified = modified;
+            this.offset = offset;
+            this.segments = segments;
+        }
+
+        String getConnectionId() {
+            return connectionId;
+        }
+
+        Direction getDirection() {
+            return direction;
+        }
+
+        String getRemotePath() {
+            return remotePath;
+        }
+
+        Path getLocalPath() {
+            return localPath;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Whether this is a segmented download, which has no single offset.
+         */
+        boolean isSegmented() {
+            return segments != null;
+        }
+
+        int getSegmentCount() {
+            return segments != null ? segments.length() : 0;
+        }
+
+        /**
+         * Bytes done from the start of segment {@code segment}.
+         */
+        long getSegmentOffset(int segment) {
+            return segments.get(segment);
+        }
+
+        /**
+         * Whether the file is still the one this entry was started for. An
+         * unknown size never matches.
+         */
+        boolean matches(String size, String modified) {
+            return size != null && size.equals(this.size) && Objects.equals(modified, this.modified);
+        }
+    }
+
+    private static final RequestProcessor RP = new RequestProcessor("FtpTransferJournal", 1);
+    private static final int SAVE_DELAY = 1000;
+    private static FtpTransferJournal instance;
+
+    private final Path file;
+    private final List<Entry> entries = new ArrayList<>();
+    private final RequestProcessor.Task saveTask;
+    // Rescheduling on every change would postpone the save while transfers keep running
+    private final AtomicBoolean savePending = new AtomicBoolean();
+
+    FtpTransferJournal(Path file) {
+        this.file = file;
+        this.saveTask = RP.create(this::save);
+        load();
+    }
+
+    static synchronized FtpTransferJournal getDefault() {
+        if (instance == null) {
+            instance = new FtpTransferJournal(
+                FtpConnectionManager.getInstance().getConfigDirectory().resolve("transfers.journal"));
+        }
+        return instance;
+    }
+
+    synchronized Entry find(String connectionId, Direction direction, String remotePath, Path localPath) {
+        for (Entry entry : entries) {
+            if (entry.connectionId.equals(connectionId) && entry.direction == direction
+                && entry.remotePath.equals(remotePath) && entry.localPath.equals(localPath)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    synchronized List<Entry> getEntries(String connectionId) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.connectionId.equals(connectionId)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a new transfer, replacing an outdated entry for the same files.
+     */
+    Entry begin(String connectionId, Direction direction, String remotePath, Path localPath,
+        String size, String modified) {
+        return add(new Entry(UUID.randomUUID().toString(), connectionId, direction, remotePath,
+            localPath, size, modified, 0, null));
+    }
+
+    /**
+     * Records a new download split into {@code segments} segments.
+     */
+    Entry beginSegmented(String connectionId, String remotePath, Path localPath, String size, String modified,
+        int segments) {
+        return add(new Entry(UUID.randomUUID().toString(), connectionId, Direction.DOWNLOAD, remotePath,
+            localPath, size, modified, 0, new AtomicLongArray(segments)));
+    }
+
+    private Entry add(Entry entry) {
+        synchronized (this) {
+            Entry outdated = find(entry.connectionId, entry.direction, entry.remotePath, entry.localPath);
+            if (outdated != null) {
+                entries.remove(outdated);
+            }
+            entries.add(entry);
+        }
+        scheduleSave();
+        return entry;
+    }
+
+    /**
+     * Notes that the first {@code offset} bytes of the transfer are done.
+     */
+    void progress(Entry entry, long offset) {
+        entry.offset = offset;
+        scheduleSave();
+    }
+
+    /**
+     * Notes that the first {@code offset} bytes of segment {@code segment} are done.
+     */
+    void progress(Entry entry, int segment, long offset) {
+        entry.segments.set(segment, offset);
+        scheduleSave();
+    }
+
+    void remove(Entry entry) {
+        boolean removed;
+        synchronized (this) {
+            removed = entries.remove(entry);
+        }
+        if (removed) {
+            scheduleSave();
+        }
+    }
+
+    synchronized void removeAll(String connectionId) {
+        if (entries.removeIf(entry -> entry.connectionId.equals(connectionId))) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Writes to disk are batched, at most one every {@link #SAVE_DELAY} ms,
+     * however many transfers start, progress or end in the meantime.
+     */
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            saveTask.schedule(SAVE_DELAY);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] f = FtpListingStore.split(line);
+                entries.add(new Entry(f[0], f[1], Direction.valueOf(f[2]), f[3], Paths.get(f[4]),
+                    f[5].isEmpty() ? null : f[5], f[6].isEmpty() ? null : f[6], Long.parseLong(f[7]),
+                    f.length > 8 && !f[8].isEmpty() ? parseSegments(f[8]) : null));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load transfer journal: " + e.getMessage());
+        }
+    }
+
+    void save() {
+        savePending.set(false);
+        List<Entry> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries);
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Entry entry : snapshot) {
+                    writer.write(String.join("\t",
+                        FtpListingStore.escape(entry.id),
+                        FtpListingStore.escape(entry.connectionId),
+                        entry.direction.name(),
+                        FtpListingStore.escape(entry.remotePath),
+                        FtpListingStore.escape(entry.localPath.toString()),
+                        FtpListingStore.escape(entry.size),
+                        FtpListingStore.escape(entry.modified),
+                        Long.toString(entry.offset),
+                        entry.segments != null ? formatSegments(entry.segments) : ""));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to save transfer journal: " + e.getMessage());
+        }
+    }
+
+    private static AtomicLongArray parseSegments(String field) {
+        String[] offsets = field.split(",");
+        AtomicLongArray segments = new AtomicLongArray(offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            segments.set(i, Long.parseLong(offsets[i]));
+        }
+        return segments;
+    }
+
+    private static String formatSegments(AtomicLongArray segments) {
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < segments.length(); i++) {
+            if (i > 0) {
+                field.append(',');
+            }
+            field.append(segments.get(i));
+        }
+        return field.toString();
+    }
+}
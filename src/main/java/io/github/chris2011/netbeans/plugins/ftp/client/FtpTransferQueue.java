@@ -0,0 +1,202 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.event.ChangeListener;
+import org.openide.util.ChangeSupport;
+
+/**
+ * The single place uploads and downloads are run.
+ * <p>
+ * At most {@link FtpSettings#getMaxConcurrentTransfers()} transfers run at
+ * once, and at most {@link FtpSettings#getMaxTransfersPerConnection()} of them
+ * for the same connection. Queued transfers start in priority order, then in
+ * the order they were submitted; one global slot is kept free for
+ * {@link FtpTransfer.Priority#INTERACTIVE interactive} transfers so opening a
+ * file does not wait behind a long background upload.
+ */
+public final class FtpTransferQueue {
+
+    private static final Comparator<FtpTransfer> START_ORDER = Comparator
+        .comparing(FtpTransfer::getPriority)
+        .thenComparingLong(t -> t.sequence);
+
+    private static FtpTransferQueue instance;
+
+    private final List<FtpTransfer> transfers = new ArrayList<>();
+    private final Map<String, Integer> runningPerConnection = new HashMap<>();
+    private final ChangeSupport changes = new ChangeSupport(this);
+    private int running;
+    private long sequence;
+
+    private FtpTransferQueue() {
+    }
+
+    public static synchronized FtpTransferQueue getDefault() {
+        if (instance == null) {
+            instance = new FtpTransferQueue();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues {@code transfer} and starts it as soon as the limits allow.
+     */
+    public FtpTransfer submit(FtpTransfer transfer) {
+        synchronized (this) {
+            transfer.sequence = sequence++;
+            transfers.add(transfer);
+        }
+        dispatch();
+        changes.fireChange();
+        return transfer;
+    }
+
+    /**
+     * All transfers in submission order, including finished ones until
+     * {@link #removeFinished()} is called.
+     */
+    public synchronized List<FtpTransfer> getTransfers() {
+        return new ArrayList<>(transfers);
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * Stops a running transfer, keeping what was transferred so far, or holds
+     * back a queued one.
+     */
+    public void pause(FtpTransfer transfer) {
+        synchronized (this) {
+            if (transfer.getState() == FtpTransfer.State.QUEUED) {
+                transfer.setState(FtpTransfer.State.PAUSED);
+            } else if (transfer.getState() == FtpTransfer.State.RUNNING) {
+                transfer.requestPause();
+            }
+        }
+        changes.fireChange();
+    }
+
+    public void resume(FtpTransfer transfer) {
+        synchronized (this) {
+            if (transfer.getState() == FtpTransfer.State.PAUSED) {
+                transfer.setState(FtpTransfer.State.QUEUED);
+            }
+        }
+        dispatch();
+        changes.fireChange();
+    }
+
+    public void cancel(FtpTransfer transfer) {
+        boolean cancelled = false;
+        synchronized (this) {
+            FtpTransfer.State state = transfer.getState();
+            if (state == FtpTransfer.State.QUEUED || state == FtpTransfer.State.PAUSED) {
+                transfer.setState(FtpTransfer.State.CANCELLED);
+                cancelled = true;
+            } else if (state == FtpTransfer.State.RUNNING) {
+                // The worker notices it on the next buffer
+                transfer.requestCancel();
+            }
+        }
+        if (cancelled) {
+            transfer.getResult().cancel(false);
+        }
+        changes.fireChange();
+    }
+
+    public void removeFinished() {
+        synchronized (this) {
+            transfers.removeIf(t -> t.getState().isFinished());
+        }
+        changes.fireChange();
+    }
+
+    /**
+     * Notified whenever a transfer is added, removed or changes its state.
+     * Progress is not reported, poll the transfers for that.
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changes.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changes.removeChangeListener(listener);
+    }
+
+    private void dispatch() {
+        List<FtpTransfer> toStart = new ArrayList<>();
+        synchronized (this) {
+            List<FtpTransfer> queued = new ArrayList<>();
+            for (FtpTransfer transfer : transfers) {
+                if (transfer.getState() == FtpTransfer.State.QUEUED) {
+                    queued.add(transfer);
+                }
+            }
+            queued.sort(START_ORDER);
+
+            int maxTotal = FtpSettings.getMaxConcurrentTransfers();
+            int maxPerConnection = FtpSettings.getMaxTransfersPerConnection();
+            for (FtpTransfer transfer : queued) {
+                boolean interactive = transfer.getPriority() == FtpTransfer.Priority.INTERACTIVE;
+                int limit = interactive || maxTotal == 1 ? maxTotal : maxTotal - 1;
+                if (running >= limit) {
+                    continue;
+                }
+                String connectionId = transfer.getConnectionId();
+                int connectionRunning = runningPerConnection.getOrDefault(connectionId, 0);
+                if (connectionRunning >= maxPerConnection) {
+                    continue;
+                }
+
+                runningPerConnection.put(connectionId, connectionRunning + 1);
+                running++;
+                transfer.setState(FtpTransfer.State.RUNNING);
+                toStart.add(transfer);
+            }
+        }
+
+        for (FtpTransfer transfer : toStart) {
+            FtpIoExecutor.getDefault().post("Transfer " + transfer.getRemotePath(), () -> run(transfer));
+        }
+    }
+
+    private void run(FtpTransfer transfer) {
+        changes.fireChange();
+        try {
+            boolean completed = transfer.execute();
+            if (completed) {
+                transfer.setState(FtpTransfer.State.COMPLETED);
+            } else {
+                transfer.setError("The server refused the transfer");
+                transfer.setState(FtpTransfer.State.FAILED);
+            }
+            transfer.getResult().complete(completed);
+        } catch (InterruptedIOException e) {
+            if (transfer.isPauseRequested()) {
+                transfer.setState(FtpTransfer.State.PAUSED);
+            } else {
+                transfer.setState(FtpTransfer.State.CANCELLED);
+                transfer.getResult().cancel(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            transfer.setError(e.getMessage());
+            transfer.setState(FtpTransfer.State.FAILED);
+            transfer.getResult().completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                running--;
+                runningPerConnection.merge(transfer.getConnectionId(), -1, Integer::sum);
+            }
+            dispatch();
+            changes.fireChange();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.awt.BorderLayout;
+import java.awt.GridLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.JToolBar;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+import org.openide.windows.Mode;
+import org.openide.windows.TopComponent;
+import org.openide.windows.WindowManager;
+
+/**
+ * Lists the transfers of the {@link FtpTransferQueue} with their live
+ * progress, and lets the user pause, resume or cancel them and change the
+ * bandwidth limits while they run.
+ */
+public class FtpTransfersTopComponent extends TopComponent {
+
+    private static final String PREFERRED_ID = "FtpClientPlugin.FtpTransfers";
+    private static final int REFRESH_INTERVAL = 1000;
+
+    private final TransferTableModel model = new TransferTableModel();
+    private final JTable table = new JTable(model);
+    private final JLabel ioStatus = new JLabel();
+    private final Timer refreshTimer = new Timer(REFRESH_INTERVAL, e -> {
+        model.refresh();
+        updateIoStatus();
+    });
+    private final ChangeListener queueListener = e -> SwingUtilities.invokeLater(model::refresh);
+
+    private JButton pauseButton;
+    private JButton resumeButton;
+    private JButton cancelButton;
+    private JButton connectionLimitsButton;
+
+    public FtpTransfersTopComponent() {
+        setName("FTP Transfers");
+        setDisplayName("FTP Transfers");
+        setToolTipText("Uploads and downloads of the FTP Client");
+        initComponents();
+    }
+
+    /**
+     * Opens the transfers window, or brings the open one to front.
+     */
+    public static TopComponent openWindow() {
+        for (TopComponent openTc : WindowManager.getDefault().getRegistry().getOpened()) {
+            if (openTc instanceof FtpTransfersTopComponent) {
+                openTc.requestActive();
+                return openTc;
+            }
+        }
+
+        TopComponent tc = new FtpTransfersTopComponent();
+        Mode output = WindowManager.getDefault().findMode("output");
+        if (output != null) {
+            output.dockInto(tc);
+        }
+        tc.open();
+        tc.requestActive();
+        return tc;
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout());
+
+        JToolBar toolbar = new JToolBar();
+        toolbar.setFloatable(false);
+
+        FtpTransferQueue queue = FtpTransferQueue.getDefault();
+        pauseButton = new JButton("Pause");
+        pauseButton.addActionListener(e -> forSelected(queue::pause));
+        resumeButton = new JButton("Resume");
+        resumeButton.addActionListener(e -> forSelected(queue::resume));
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> forSelected(queue::cancel));
+        JButton clearButton = new JButton("Clear Finished");
+        clearButton.addActionListener(e -> queue.removeFinished());
+
+        toolbar.add(pauseButton);
+        toolbar.add(resumeButton);
+        toolbar.add(cancelButton);
+        toolbar.addSeparator();
+        toolbar.add(clearButton);
+        toolbar.addSeparator();
+
+        toolbar.add(new JLabel("Download limit (KB/s): "));
+        JSpinner downloadLimit = createRateSpinner(FtpSettings.getMaxDownloadRate());
+        downloadLimit.addChangeListener(e -> FtpSettings.setMaxDownloadRate((Integer) downloadLimit.getValue()));
+        toolbar.add(downloadLimit);
+        toolbar.add(new JLabel(" Upload limit (KB/s): "));
+        JSpinner uploadLimit = createRateSpinner(FtpSettings.getMaxUploadRate());
+        uploadLimit.addChangeListener(e -> FtpSettings.setMaxUploadRate((Integer) uploadLimit.getValue()));
+        toolbar.add(uploadLimit);
+        toolbar.addSeparator();
+
+        connectionLimitsButton = new JButton("Connection Limits...");
+        connectionLimitsButton.addActionListener(e -> editConnectionLimits());
+        toolbar.add(connectionLimitsButton);
+        add(toolbar, BorderLayout.NORTH);
+
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        table.setFillsViewportHeight(true);
+        table.getSelectionModel().addListSelectionListener(e -> updateButtons());
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(ioStatus, BorderLayout.SOUTH);
+
+        updateButtons();
+        updateIoStatus();
+    }
+
+    private void updateIoStatus() {
+        FtpIoExecutor executor = FtpIoExecutor.getDefault();
+        ioStatus.setText(" FTP I/O operations in flight: " + executor.getInFlightCount()
+            + (executor.isUsingVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+    }
+
+    private void forSelected(Consumer<FtpTransfer> action) {
+        for (int row : table.getSelectedRows()) {
+            action.accept(model.getTransfer(table.convertRowIndexToModel(row)));
+        }
+    }
+
+    private static JSpinner createRateSpinner(int value) {
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(value, 0, Integer.MAX_VALUE, 64));
+        spinner.setToolTipText("0 = unlimited");
+        return spinner;
+    }
+
+    /**
+     * Changes the limits of the connection of the first selected transfer.
+     */
+    private void editConnectionLimits() {
+        int[] rows = table.getSelectedRows();
+        if (rows.length == 0) {
+            return;
+        }
+        FtpClient client = model.getTransfer(table.convertRowIndexToModel(rows[0])).getClient();
+        FtpConnection connection = client.getConnection();
+
+        JSpinner downloadLimit = createRateSpinner(connection.getMaxDownloadRate());
+        JSpinner uploadLimit = createRateSpinner(connection.getMaxUploadRate());
+        JPanel panel = new JPanel(new GridLayout(2, 2, 8, 4));
+        panel.add(new JLabel("Download limit (KB/s, 0 = unlimited):"));
+        panel.add(downloadLimit);
+        panel.add(new JLabel("Upload limit (KB/s, 0 = unlimited):"));
+        panel.add(uploadLimit);
+
+        NotifyDescriptor descriptor = new NotifyDescriptor.Confirmation(panel,
+            "Limits for " + connection.getDisplayName(), NotifyDescriptor.OK_CANCEL_OPTION,
+            NotifyDescriptor.PLAIN_MESSAGE);
+        if (DialogDisplayer.getDefault().notify(descriptor) == NotifyDescriptor.OK_OPTION) {
+            connection.setMaxDownloadRate((Integer) downloadLimit.getValue());
+            connection.setMaxUploadRate((Integer) uploadLimit.getValue());
+            client.applyLimits();
+            FtpConnectionManager.getInstance().updateConnection(connection, connection.getName());
+        }
+    }
+
+    private void updateButtons() {
+        boolean canPause = false;
+        boolean canResume = false;
+        boolean canCancel = false;
+        for (int row : table.getSelectedRows()) {
+            FtpTransfer.State state = model.getTransfer(table.convertRowIndexToModel(row)).getState();
+            canPause |= state == FtpTransfer.State.QUEUED || state == FtpTransfer.State.RUNNING;
+            canResume |= state == FtpTransfer.State.PAUSED;
+            canCancel |= !state.isFinished();
+        }
+        pauseButton.setEnabled(canPause);
+        resumeButton.setEnabled(canResume);
+        cancelButton.setEnabled(canCancel);
+        connectionLimitsButton.setEnabled(table.getSelectedRowCount() > 0);
+    }
+
+    @Override
+    protected void componentOpened() {
+        super.componentOpened();
+        FtpTransferQueue.getDefault().addChangeListener(queueListener);
+        model.refresh();
+        refreshTimer.start();
+    }
+
+    @Override
+    protected void componentClosed() {
+        super.componentClosed();
+        refreshTimer.stop();
+        FtpTransferQueue.getDefault().removeChangeListener(queueListener);
+    }
+
+    @Override
+    public int getPersistenceType() {
+        return TopComponent.PERSISTENCE_NEVER;
+    }
+
+    @Override
+    public String preferredID() {
+        return PREFERRED_ID;
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private final class TransferTableModel extends AbstractTableModel {
+
+        private final String[] columns = {"File", "Connection", "Direction", "Priority", "State", "Progress", "Speed"};
+        private List<FtpTransfer> transfers = new ArrayList<>();
+
+        FtpTransfer getTransfer(int row) {
+            return transfers.get(row);
+        }
+
+        /**
+         * Takes a new snapshot of the queue, keeping the selected transfers selected.
+         */
+        void refresh() {
+            List<FtpTransfer> selected = new ArrayList<>();
+            for (int row : table.getSelectedRows()) {
+                selected.add(transfers.get(table.convertRowIndexToModel(row)));
+            }
+
+            List<FtpTransfer> snapshot = FtpTransferQueue.getDefault().getTransfers();
+            if (snapshot.equals(transfers)) {
+                if (!transfers.isEmpty()) {
+                    fireTableRowsUpdated(0, transfers.size() - 1);
+                }
+            } else {
+                transfers = snapshot;
+                fireTableDataChanged();
+                for (FtpTransfer transfer : selected) {
+                    int row = transfers.indexOf(transfer);
+                    if (row >= 0) {
+                        int viewRow = table.convertRowIndexToView(row);
+                        table.addRowSelectionInterval(viewRow, viewRow);
+                    }
+                }
+            }
+            updateButtons();
+        }
+
+        @Override
+        public int getRowCount() {
+            return transfers.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            FtpTransfer transfer = transfers.get(row);
+            switch (column) {
+                case 0:
+                    return transfer.getRemotePath();
+                case 1:
+                    return transfer.getClient().getConnection().getDisplayName();
+                case 2:
+                    return transfer.getDirection() == FtpTransfer.Direction.DOWNLOAD ? "Download" : "Upload";
+                case 3:
+                    return transfer.getPriority() == FtpTransfer.Priority.INTERACTIVE ? "Interactive" : "Background";
+                case 4:
+                    return transfer.getError() != null
+                        ? transfer.getState() + ": " + transfer.getError() : transfer.getState().toString();
+                case 5:
+                    long size = transfer.getExpectedSize();
+                    long bytes = transfer.getBytesTransferred();
+                    if (size > 0 && bytes <= size) {
+                        return formatBytes(bytes) + " of " + formatBytes(size)
+                            + " (" + (bytes * 100 / size) + "%)";
+                    }
+                    return formatBytes(bytes);
+                case 6:
+                    long rate = transfer.getBytesPerSecond();
+                    return rate > 0 ? formatBytes(rate) + "/s" : "";
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads one file over several pooled sessions at once.
+ * <p>
+ * The file is split into equally sized segments. Every segment is requested
+ * with {@code REST <offset>} and written at its offset into the preallocated
+ * target file, which helps on links where a single data connection cannot use
+ * the available bandwidth. Segments are fetched by workers forked on the
+ * {@link FtpIoExecutor}, so cancelling the transfer cancels them as well.
+ * Every worker owns one session, the first borrowed like for any download,
+ * the others without waiting and never the last free one, so browsing and
+ * other transfers keep working; a worker that finishes its segment takes the
+ * next one that nobody started yet.
+ * <p>
+ * The download is recorded in the {@link FtpTransferJournal} with the offset
+ * reached in every segment. A download interrupted by a dropped connection,
+ * a pause or an IDE restart continues each segment where it stopped, as long
+ * as the remote SIZE and MDTM are unchanged.
+ */
+final class SegmentedDownload {
+
+    private static final int ABORT_TIMEOUT = 10_000;
+
+    private final FtpClient client;
+    private final String remotePath;
+    private final long size;
+    private final String sizeReply;
+    private final String modified;
+    private final FtpClient.TransferListener listener;
+    private final FtpTransferJournal journal = FtpTransferJournal.getDefault();
+    private final AtomicLong transferred = new AtomicLong();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final AtomicInteger nextSegment = new AtomicInteger();
+    private final FtpMetrics.TransferMeter meter;
+    private FtpTransferJournal.Entry entry;
+    private long segmentSize;
+    private int segmentCount;
+
+    /**
+     * @param sizeReply the SIZE reply {@code size} was parsed from, which
+     *                  identifies the file in the journal together with
+     * @param modified  the MDTM reply, may be {@code null}
+     */
+    SegmentedDownload(FtpClient client, String remotePath, long size, String sizeReply, String modified,
+        FtpClient.TransferListener listener) {
+        this.client = client;
+        this.remotePath = remotePath;
+        this.size = size;
+        this.sizeReply = sizeReply;
+        this.modified = modified;
+        this.listener = listener;
+        this.meter = client.getMetrics().startTransfer(false);
+    }
+
+    /**
+     * Continues the journaled download into {@code target} if there is one,
+     * otherwise starts a new one with {@code segments} segments.
+     *
+     * @return {@code false} if there is nothing to continue and {@code segments}
+     *         or the free sessions are fewer than two, or the server rejected {@code REST} or {@code RETR};
+     *         {@code target} is then incomplete
+     * @throws InterruptedIOException if the listener aborted the transfer
+     */
+    boolean run(Path target, int segments) throws IOException {
+        try {
+            if (!download(target, segments)) {
+                return false;
+            }
+            meter.finish();
+            return true;
+        } finally {
+            meter.abort();
+        }
+    }
+
+    /**
+     * Bytes downloaded so far, resumed ones included; {@code 0} if the
+     * download never started.
+     */
+    long getTransferred() {
+        return transferred.get();
+    }
+
+    private boolean download(Path target, int segments) throws IOException {
+        String connectionId = client.getConnection().getId();
+        FtpTransferJournal.Entry journaled = journal.find(connectionId, FtpTransferJournal.Direction.DOWNLOAD,
+            remotePath, target);
+        boolean resume = journaled != null && journaled.isSegmented() && journaled.matches(sizeReply, modified)
+            && Files.exists(target) && Files.size(target) == size;
+        if (!resume && segments < 2) {
+            return false;
+        }
+
+        FtpSessionPool pool = client.getSessionPool();
+        Queue<FtpSession> sessions = new ConcurrentLinkedQueue<>();
+        try {
+            sessions.add(pool.borrow());
+            while (sessions.size() < (resume ? journaled.getSegmentCount() : segments)) {
+                FtpSession session = pool.tryBorrow(1);
+                if (session == null) {
+                    break;
+                }
+                sessions.add(session);
+            }
+            if (!resume && sessions.size() < 2) {
+                // Not worth it, the single stream does as well
+                return false;
+            }
+
+            if (resume) {
+                entry = journaled;
+                segmentCount = entry.getSegmentCount();
+                segmentSize = (size + segmentCount - 1) / segmentCount;
+                for (int i = 0; i < segmentCount; i++) {
+                    transferred.addAndGet(entry.getSegmentOffset(i));
+                }
+            } else {
+                segmentSize = (size + segments - 1) / segments;
+                segmentCount = (int) ((size + segmentSize - 1) / segmentSize);
+                entry = journal.beginSegmented(connectionId, remotePath, target, sizeReply, modified, segmentCount);
+            }
+
+            boolean accepted;
+            try {
+                accepted = download(target, resume, pool, sessions);
+            } catch (InterruptedIOException e) {
+                // A timeout is a dropped connection, not a cancelled transfer
+                if (!(e instanceof SocketTimeoutException) && (listener == null || !listener.isResumable())) {
+                    journal.remove(entry);
+                }
+                throw e;
+            }
+            // Done, or refused and the single stream starts over
+            journal.remove(entry);
+            return accepted;
+        } finally {
+            // Workers that never started leave their session behind
+            FtpSession session;
+            while ((session = sessions.poll()) != null) {
+                pool.release(session);
+            }
+        }
+    }
+
+    private boolean download(Path target, boolean resume, FtpSessionPool pool, Queue<FtpSession> sessions)
+        throws IOException {
+        try (FileChannel channel = resume
+            ? FileChannel.open(target, StandardOpenOption.WRITE)
+            : FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            if (!resume) {
+                // Preallocate, so every segment can write at its own position
+                channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+            }
+
+            int workers = sessions.size();
+            BlockingQueue<FtpIoExecutor.Operation<Boolean>> finished = new LinkedBlockingQueue<>();
+            List<FtpIoExecutor.Operation<Boolean>> operations = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                FtpIoExecutor.Operation<Boolean> operation = FtpIoExecutor.getDefault().fork(
+                    "Segments of " + remotePath, () -> work(pool, sessions.poll(), channel));
+                operations.add(operation);
+                operation.getResult().whenComplete((accepted, error) -> finished.add(operation));
+            }
+
+            // In the order the workers finish, so a failure stops the others right away
+            boolean accepted = true;
+            IOException failure = null;
+            for (int i = 0; i < workers; i++) {
+                FtpIoExecutor.Operation<Boolean> operation;
+                try {
+                    operation = finished.take();
+                    if (!operation.getResult().get()) {
+                        accepted = false;
+                        stopped.set(true);
+                    }
+                } catch (ExecutionException e) {
+                    stopped.set(true);
+                    if (failure == null) {
+                        failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stopped.set(true);
+                    operations.forEach(FtpIoExecutor.Operation::cancel);
+                    throw new InterruptedIOException("Download interrupted");
+                } catch (CancellationException e) {
+                    stopped.set(true);
+                    throw new InterruptedIOException("Download cancelled");
+                }
+            }
+
+            if (failure != null && accepted) {
+                throw failure;
+            }
+            if (!accepted) {
+                return false;
+            }
+        }
+
+        long written = Files.size(target);
+        if (written != size || transferred.get() != size) {
+            journal.remove(entry);
+            throw new IOException("Downloaded " + transferred.get() + " bytes of " + remotePath
+                + " but the server reported " + size);
+        }
+        return true;
+    }
+
+    /**
+     * Downloads segments on {@code session} until none is left.
+     *
+     * @return {@code false} if the server refused one
+     */
+    private boolean work(FtpSessionPool pool, FtpSession session, FileChannel channel) throws IOException {
+        if (session == null) {
+            return true;
+        }
+        return client.withSession(pool, session, s -> {
+            int segment;
+            while ((segment = nextSegment.getAndIncrement()) < segmentCount) {
+                if (stopped.get()) {
+                    throw new InterruptedIOException("Download cancelled");
+                }
+                if (!downloadSegment(s, channel, segment)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private boolean downloadSegment(FtpSession session, FileChannel channel, int segment) throws IOException {
+        long start = segment * segmentSize;
+        long end = Math.min(start + segmentSize, size);
+        long done = entry.getSegmentOffset(segment);
+        if (start + done >= end) {
+            // Finished before the download was interrupted
+            return true;
+        }
+        long offset = start + done;
+        long length = end - offset;
+
+        session.setRestartOffset(offset);
+        InputStream in = session.retrieveFileStream(remotePath);
+        if (in == null) {
+            // REST or RETR refused, the control connection is still in sync
+            stopped.set(true);
+            return false;
+        }
+
+        byte[] buffer = FtpClient.transferBuffer();
+        long position = offset;
+        long remaining = length;
+        try (InputStream data = in) {
+            while (remaining > 0) {
+                if (stopped.get()) {
+                    throw new InterruptedIOException("Download cancelled");
+                }
+                int read = data.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Unexpected end of " + remotePath + " at offset " + position);
+                }
+
+                client.getDownloadLimiter().acquire(read);
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+                remaining -= read;
+                journal.progress(entry, segment, position - start);
+                report(read);
+            }
+        }
+
+        if (offset + length < size) {
+            // We closed the data connection before the end of the file, the
+            // server answers that with an error; ABOR brings the session back
+            if (!session.abortTransfer(ABORT_TIMEOUT)) {
+                session.markBroken();
+            }
+            return true;
+        }
+        if (!session.completePendingCommand()) {
+            throw new IOException("Server failed the transfer of " + remotePath + ": "
+                + session.getReplyString());
+        }
+        return true;
+    }
+    private void report(int read) throws InterruptedIOException {
+        long total = transferred.addAndGet(read);
+        meter.bytesTransferred(total, read, size);
+        if (listener == null) {
+            return;
+        }
+        synchronized (listener) {
+            if (!listener.transferred(total)) {
+                stopped.set(true);
+                throw new InterruptedIOException("Transfer cancelled");
+            }
+        }
+    }
+}
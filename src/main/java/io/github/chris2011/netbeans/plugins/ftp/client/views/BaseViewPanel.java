@@ -1,5 +1,6 @@
 package io.github.chris2011.netbeans.plugins.ftp.client.views;
 
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpClient;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpExplorerTopComponent;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpFile;
 import java.io.IOException;
@@ -22,6 +23,17 @@ public abstract class BaseViewPanel extends JPanel {
         return parentComponent.listFiles(path);
     }
 
+    protected void listFiles(String path, FtpClient.PageConsumer consumer) throws IOException {
+        parentComponent.listFiles(path, consumer);
+    }
+
+    /**
+     * Last listing seen for {@code path}, shown while a fresh one is loaded.
+     */
+    protected List<FtpFile> getLastKnownListing(String path) {
+        return parentComponent.getLastKnownListing(path);
+    }
+
     protected boolean isConnected() {
         return parentComponent.isConnected();
     }
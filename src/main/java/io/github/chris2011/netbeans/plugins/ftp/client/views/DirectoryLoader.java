@@ -0,0 +1,98 @@
+package io.github.chris2011.netbeans.plugins.ftp.client.views;
+
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpFile;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpIoExecutor;
+import java.io.IOException;
+import java.util.List;
+import javax.swing.SwingUtilities;
+
+/**
+ * Lists remote directories on the {@link FtpIoExecutor} for one view.
+ * <p>
+ * Results are handed to a {@link Callback} on the Event Dispatch Thread. A
+ * {@link Load} that was cancelled, because the user navigated elsewhere, is
+ * interrupted and never reaches its callback.
+ */
+final class DirectoryLoader {
+
+    /**
+     * Receives the result of one load. All methods are called on the EDT.
+     */
+    interface Callback {
+
+        /**
+         * Another page of a listing that had nothing to show yet.
+         */
+        void addFiles(List<FtpFile> page);
+
+        /**
+         * The fresh listing replacing the last known one shown so far.
+         */
+        void updateFiles(List<FtpFile> files);
+
+        /**
+         * The load is over; {@code error} is {@code null} on success.
+         */
+        void finished(IOException error);
+    }
+
+    /**
+     * Handle of a running load.
+     */
+    final class Load {
+
+        private volatile boolean cancelled;
+        private FtpIoExecutor.Operation<Void> operation;
+
+        void cancel() {
+            cancelled = true;
+            operation.cancel();
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final BaseViewPanel view;
+
+    DirectoryLoader(BaseViewPanel view) {
+        this.view = view;
+    }
+
+    /**
+     * Starts listing {@code path}. With {@code revalidate} the listing is read
+     * as a whole and passed to {@link Callback#updateFiles}, otherwise it is
+     * streamed page by page into {@link Callback#addFiles}.
+     */
+    Load load(String path, boolean revalidate, Callback callback) {
+        Load load = new Load();
+        load.operation = FtpIoExecutor.getDefault().post("List " + path, () -> {
+            IOException error = null;
+            try {
+                if (revalidate) {
+                    List<FtpFile> fresh = view.listFiles(path);
+                    onEdt(load, () -> callback.updateFiles(fresh));
+                } else {
+                    view.listFiles(path, page -> {
+                        onEdt(load, () -> callback.addFiles(page));
+                        return !load.isCancelled();
+                    });
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            IOException result = error;
+            onEdt(load, () -> callback.finished(result));
+        });
+        return load;
+    }
+
+    private static void onEdt(Load load, Runnable r) {
+        SwingUtilities.invokeLater(() -> {
+            if (!load.isCancelled()) {
+                r.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.chris2011.netbeans.plugins.ftp.client.views;
+
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings a sorted list of entries in line with a fresh listing while touching
+ * only the rows that really changed, so a revalidated view keeps its
+ * selection and scroll position.
+ */
+final class FileListDiff {
+
+    interface RangeListener {
+
+        /**
+         * Rows {@code from} to {@code to}, both inclusive, were inserted.
+         */
+        void inserted(int from, int to);
+    }
+
+    /**
+     * Row ranges, both ends inclusive, as seen by a view that replays the
+     * events one after the other on its old rows.
+     */
+    interface Listener extends RangeListener {
+
+        void removed(int from, int to);
+
+        void changed(int from, int to);
+    }
+
+    private static final int INSERTED = 0;
+    private static final int REMOVED = 1;
+    private static final int CHANGED = 2;
+
+    private FileListDiff() {
+    }
+
+    /**
+     * Builds the new rows in a single pass and swaps them in before reporting
+     * the changes, so scattered changes in a large listing stay linear.
+     *
+     * @param target list sorted by {@link FtpFile#DIRECTORIES_FIRST}, updated in place
+     * @param fresh  the new listing in any order
+     */
+    static void apply(List<FtpFile> target, List<FtpFile> fresh, Listener listener) {
+        List<FtpFile> sorted = new ArrayList<>(fresh);
+        sorted.sort(FtpFile.DIRECTORIES_FIRST);
+
+        // Rows before merged.size() are final, the old ones not consumed yet follow them
+        List<FtpFile> merged = new ArrayList<>(sorted.size());
+        List<int[]> ranges = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < target.size() || j < sorted.size()) {
+            int row = merged.size();
+            if (j >= sorted.size()) {
+                i++;
+                add(ranges, REMOVED, row);
+                continue;
+            }
+            if (i >= target.size()) {
+                merged.add(sorted.get(j++));
+                add(ranges, INSERTED, row);
+                continue;
+            }
+
+            FtpFile current = target.get(i);
+            FtpFile update = sorted.get(j);
+            int order = FtpFile.DIRECTORIES_FIRST.compare(current, update);
+            if (order == 0) {
+                if (current.hasSameAttributes(update)) {
+                    merged.add(current);
+                } else {
+                    merged.add(update);
+                    add(ranges, CHANGED, row);
+                }
+                i++;
+                j++;
+            } else if (order < 0) {
+                i++;
+                add(ranges, REMOVED, row);
+            } else {
+                merged.add(update);
+                add(ranges, INSERTED, row);
+                j++;
+            }
+        }
+
+        if (ranges.isEmpty()) {
+            return;
+        }
+        target.clear();
+        target.addAll(merged);
+        for (int[] range : ranges) {
+            switch (range[0]) {
+                case INSERTED:
+                    listener.inserted(range[1], range[2]);
+                    break;
+                case REMOVED:
+                    listener.removed(range[1], range[2]);
+                    break;
+                default:
+                    listener.changed(range[1], range[2]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Adds a single row event, extending the last range where possible:
+     * removing the same row again removes the next old one.
+     */
+    private static void add(List<int[]> ranges, int kind, int row) {
+        int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last[0] == kind) {
+            if (kind == REMOVED && row == last[1]) {
+                last[2]++;
+                return;
+            }
+            if (kind != REMOVED && row == last[2] + 1) {
+                last[2] = row;
+                return;
+            }
+        }
+        ranges.add(new int[]{kind, row, row});
+    }
+
+    /**
+     * Merges one page of a streamed listing into the entries shown so far.
+     * Only the inserted rows are reported, as ranges in ascending order, so a
+     * view does not have to measure its existing rows again.
+     *
+     * @param target list sorted by {@link FtpFile#DIRECTORIES_FIRST}, updated in place
+     * @param page   entries not in {@code target} yet, in any order
+     */
+    static void merge(List<FtpFile> target, List<FtpFile> page, RangeListener listener) {
+        List<FtpFile> sorted = new ArrayList<>(page);
+        sorted.sort(FtpFile.DIRECTORIES_FIRST);
+
+        List<FtpFile> merged = new ArrayList<>(target.size() + sorted.size());
+        List<int[]> ranges = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (j < sorted.size()) {
+            if (i < target.size() && FtpFile.DIRECTORIES_FIRST.compare(target.get(i), sorted.get(j)) <= 0) {
+                merged.add(target.get(i++));
+                continue;
+            }
+            int from = merged.size();
+            while (j < sorted.size()
+                && (i >= target.size() || FtpFile.DIRECTORIES_FIRST.compare(target.get(i), sorted.get(j)) > 0)) {
+                merged.add(sorted.get(j++));
+            }
+            ranges.add(new int[]{from, merged.size() - 1});
+        }
+        merged.addAll(target.subList(i, target.size()));
+
+        target.clear();
+        target.addAll(merged);
+        for (int[] range : ranges) {
+            listener.inserted(range[0], range[1]);
+        }
+    }
+}
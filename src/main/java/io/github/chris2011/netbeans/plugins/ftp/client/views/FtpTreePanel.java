@@ -1,8 +1,12 @@
 package io.github.chris2011.netbeans.plugins.ftp.client.views;
 
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpClient;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpExplorerTopComponent;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpFile;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpFileOpener;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpFolderDownload;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpFolderWatcher;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpMirrorSync;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpIcons;
 
 import java.awt.BorderLayout;
@@ -12,34 +16,49 @@ import java.awt.event.MouseEvent;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.swing.Icon;
+import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.JTree;
 import javax.swing.SwingConstants;
-import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
+import org.openide.util.WeakListeners;
 
 public class FtpTreePanel extends BaseViewPanel {
 
+    private static final String LOADING = "Loading...";
+
     private final JTree tree;
     private final JTable table;
     private final DefaultTreeModel treeModel;
     private final FtpFileTableModel tableModel;
     private final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
+    private final DirectoryLoader loader;
+    private final Map<DefaultMutableTreeNode, DirectoryLoader.Load> childLoads = new HashMap<>();
+    private DirectoryLoader.Load tableLoad;
+    private final ChangeListener iconListener = e -> repaint();
 
     public FtpTreePanel(FtpExplorerTopComponent parentComponent, org.openide.explorer.ExplorerManager explorerManager) {
         super(parentComponent);
+        this.loader = new DirectoryLoader(this);
         setLayout(new BorderLayout());
 
         // Create tree for navigation
@@ -58,6 +77,9 @@ public class FtpTreePanel extends BaseViewPanel {
         // Configure column alignment
         setupColumnAlignment();
 
+        // File icons are resolved in the background, repaint once they arrive
+        FtpIcons.addChangeListener(WeakListeners.change(iconListener, null));
+
         // Add tree selection listener
         tree.addTreeSelectionListener(new TreeSelectionListener() {
             @Override
@@ -66,6 +88,22 @@ public class FtpTreePanel extends BaseViewPanel {
             }
         });
 
+        // Load children when a node is expanded, stop loading when it is collapsed again
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                loadTreeChildren((DefaultMutableTreeNode) event.getPath().getLastPathComponent());
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {
+                DirectoryLoader.Load load = childLoads.remove(event.getPath().getLastPathComponent());
+                if (load != null) {
+                    load.cancel();
+                }
+            }
+        });
+
         // Add double-click to open files
         table.addMouseListener(new MouseAdapter() {
             @Override
@@ -80,6 +118,28 @@ public class FtpTreePanel extends BaseViewPanel {
                     }
                 }
             }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showTablePopup(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showTablePopup(e);
+            }
+        });
+
+        tree.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showTreePopup(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showTreePopup(e);
+            }
         });
 
         // Create split pane
@@ -93,48 +153,174 @@ public class FtpTreePanel extends BaseViewPanel {
         clear();
     }
 
+    private void showTablePopup(MouseEvent e) {
+        if (!e.isPopupTrigger()) {
+            return;
+        }
+        int row = table.rowAtPoint(e.getPoint());
+        if (row < 0) {
+            return;
+        }
+        table.setRowSelectionInterval(row, row);
+        showDirectoryPopup(tableModel.getFileAt(row), e);
+    }
+
+    private void showTreePopup(MouseEvent e) {
+        if (!e.isPopupTrigger()) {
+            return;
+        }
+        TreePath path = tree.getPathForLocation(e.getX(), e.getY());
+        if (path == null) {
+            return;
+        }
+        Object userObject = ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject();
+        if (userObject instanceof FtpTreeNodeData) {
+            tree.setSelectionPath(path);
+            showDirectoryPopup(((FtpTreeNodeData) userObject).getFile(), e);
+        }
+    }
+
+    private void showDirectoryPopup(FtpFile file, MouseEvent e) {
+        if (file == null || !file.isDirectory()) {
+            return;
+        }
+        JMenuItem downloadItem = new JMenuItem("Download Folder...");
+        downloadItem.addActionListener(a -> FtpFolderDownload.downloadFolder(file, parentComponent.getFtpClient()));
+        JMenuItem syncItem = new JMenuItem("Synchronize from Local Folder...");
+        syncItem.addActionListener(a -> FtpMirrorSync.syncFolder(file, parentComponent.getFtpClient()));
+        FtpClient client = parentComponent.getFtpClient();
+        boolean watching = FtpFolderWatcher.isWatching(file, client);
+        JMenuItem watchItem = new JMenuItem(watching ? "Stop Synchronizing" : "Keep Synchronized with Local Folder...");
+        watchItem.addActionListener(a -> {
+            if (watching) {
+                FtpFolderWatcher.stopWatching(file, client);
+            } else {
+                FtpFolderWatcher.startWatching(file, client);
+            }
+        });
+        JPopupMenu menu = new JPopupMenu();
+        menu.add(downloadItem);
+        menu.add(syncItem);
+        menu.add(watchItem);
+        menu.show(e.getComponent(), e.getX(), e.getY());
+    }
+
     public void refresh() {
         if (!isConnected()) {
             return;
         }
 
-        try {
-            // Build tree structure
-            FtpFile rootFile = FtpFile.createRoot(parentComponent.getConnection().getDisplayName());
-            DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(new FtpTreeNodeData(rootFile, "/"));
-            loadTreeChildren(rootNode, "/");
+        cancelLoads();
 
-            treeModel.setRoot(rootNode);
-            tree.expandRow(0); // Expand root
+        // Build tree structure; children arrive from the background loader
+        FtpFile rootFile = FtpFile.createRoot(parentComponent.getConnection().getDisplayName());
+        DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(new FtpTreeNodeData(rootFile, "/"));
+        rootNode.add(new DefaultMutableTreeNode(LOADING));
 
-            // Load root directory in table
-            List<FtpFile> files = listFiles("/");
-            tableModel.setFiles(files);
-        } catch (IOException e) {
-            e.printStackTrace();
-            clear();
-        }
+        treeModel.setRoot(rootNode);
+        loadTreeChildren(rootNode);
+        tree.expandRow(0); // Expand root
+
+        // Load root directory in table
+        loadDirectoryInTable("/");
     }
 
     public void clear() {
+        cancelLoads();
         DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode("Disconnected");
         treeModel.setRoot(rootNode);
         tableModel.setFiles(new ArrayList<>());
     }
 
-    private void loadTreeChildren(DefaultMutableTreeNode parentNode, String path) {
-        try {
-            List<FtpFile> files = listFiles(path);
-            for (FtpFile file : files) {
-                if (file.isDirectory()) {
-                    DefaultMutableTreeNode childNode = new DefaultMutableTreeNode(new FtpTreeNodeData(file, file.getPath()));
-                    parentNode.add(childNode);
-                    // Add dummy child for lazy loading
-                    childNode.add(new DefaultMutableTreeNode("Loading..."));
+    private void cancelLoads() {
+        childLoads.values().forEach(DirectoryLoader.Load::cancel);
+        childLoads.clear();
+        if (tableLoad != null) {
+            tableLoad.cancel();
+            tableLoad = null;
+        }
+        tableModel.setLoading(false);
+    }
+
+    private static boolean needsChildren(DefaultMutableTreeNode node) {
+        return node.getChildCount() == 1
+            && LOADING.equals(((DefaultMutableTreeNode) node.getFirstChild()).getUserObject());
+    }
+
+    private void loadTreeChildren(DefaultMutableTreeNode parentNode) {
+        if (!(parentNode.getUserObject() instanceof FtpTreeNodeData)
+            || !needsChildren(parentNode) || childLoads.containsKey(parentNode)) {
+            return;
+        }
+
+        String path = ((FtpTreeNodeData) parentNode.getUserObject()).getPath();
+        List<FtpFile> lastKnown = getLastKnownListing(path);
+        if (lastKnown != null) {
+            setTreeChildren(parentNode, lastKnown);
+        }
+
+        childLoads.put(parentNode, loader.load(path, true, new DirectoryLoader.Callback() {
+            @Override
+            public void addFiles(List<FtpFile> page) {
+                // Tree children are always loaded as a whole
+            }
+
+            @Override
+            public void updateFiles(List<FtpFile> files) {
+                setTreeChildren(parentNode, files);
+            }
+
+            @Override
+            public void finished(IOException error) {
+                childLoads.remove(parentNode);
+                if (error != null) {
+                    // Keep the placeholder, expanding the node again retries
+                    error.printStackTrace();
                 }
             }
-        } catch (IOException e) {
-            // Ignore errors for tree building
+        }));
+    }
+
+    /**
+     * Replaces the directory children of {@code parentNode}, keeping the nodes
+     * (and with them the expansion state) of directories that still exist.
+     */
+    private void setTreeChildren(DefaultMutableTreeNode parentNode, List<FtpFile> files) {
+        Map<String, DefaultMutableTreeNode> existing = new HashMap<>();
+        for (int i = 0; i < parentNode.getChildCount(); i++) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) parentNode.getChildAt(i);
+            if (child.getUserObject() instanceof FtpTreeNodeData) {
+                existing.put(((FtpTreeNodeData) child.getUserObject()).getPath(), child);
+            }
+        }
+
+        List<FtpFile> directories = new ArrayList<>();
+        for (FtpFile file : files) {
+            if (file.isDirectory()) {
+                directories.add(file);
+            }
+        }
+        directories.sort(FtpFile.DIRECTORIES_FIRST);
+
+        TreePath parentPath = new TreePath(parentNode.getPath());
+        Enumeration<TreePath> expanded = tree.getExpandedDescendants(parentPath);
+
+        parentNode.removeAllChildren();
+        for (FtpFile directory : directories) {
+            DefaultMutableTreeNode childNode = existing.get(directory.getPath());
+            if (childNode == null) {
+                childNode = new DefaultMutableTreeNode(new FtpTreeNodeData(directory, directory.getPath()));
+                // Add dummy child for lazy loading
+                childNode.add(new DefaultMutableTreeNode(LOADING));
+            }
+            parentNode.add(childNode);
+        }
+        treeModel.nodeStructureChanged(parentNode);
+
+        if (expanded != null) {
+            while (expanded.hasMoreElements()) {
+                tree.expandPath(expanded.nextElement());
+            }
         }
     }
 
@@ -149,23 +335,44 @@ public class FtpTreePanel extends BaseViewPanel {
                 loadDirectoryInTable(nodeData.getPath());
 
                 // Lazy load children if needed
-                if (node.getChildCount() == 1 && "Loading...".equals(node.getFirstChild().toString())) {
-                    node.removeAllChildren();
-                    loadTreeChildren(node, nodeData.getPath());
-                    treeModel.nodeStructureChanged(node);
-                }
+                loadTreeChildren(node);
             }
         }
     }
 
     private void loadDirectoryInTable(String path) {
-        try {
-            List<FtpFile> files = listFiles(path);
-            tableModel.setFiles(files);
-        } catch (IOException e) {
-            e.printStackTrace();
-            tableModel.setFiles(new ArrayList<>());
+        if (tableLoad != null) {
+            tableLoad.cancel();
         }
+
+        List<FtpFile> lastKnown = getLastKnownListing(path);
+        tableModel.setFiles(lastKnown != null ? lastKnown : new ArrayList<>());
+        tableModel.setLoading(lastKnown == null);
+
+        DirectoryLoader.Load[] load = new DirectoryLoader.Load[1];
+        load[0] = loader.load(path, lastKnown != null, new DirectoryLoader.Callback() {
+            @Override
+            public void addFiles(List<FtpFile> page) {
+                tableModel.addFiles(page);
+            }
+
+            @Override
+            public void updateFiles(List<FtpFile> files) {
+                tableModel.updateFiles(files);
+            }
+
+            @Override
+            public void finished(IOException error) {
+                if (tableLoad == load[0]) {
+                    tableLoad = null;
+                }
+                tableModel.setLoading(false);
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            }
+        });
+        tableLoad = load[0];
     }
 
     private void setupColumnAlignment() {
@@ -182,15 +389,62 @@ public class FtpTreePanel extends BaseViewPanel {
     private class FtpFileTableModel extends AbstractTableModel {
         private final String[] columnNames = {"Name", "Size", "Modified", "Permissions", "Owner"};
         private List<FtpFile> files = new ArrayList<>();
+        private boolean loading;
+
+        /**
+         * Shows a single placeholder row while there is nothing to list yet.
+         */
+        public void setLoading(boolean loading) {
+            if (this.loading != loading) {
+                this.loading = loading;
+                if (files.isEmpty()) {
+                    fireTableDataChanged();
+                }
+            }
+        }
 
         public void setFiles(List<FtpFile> files) {
             this.files = new ArrayList<>(files);
+            this.files.sort(FtpFile.DIRECTORIES_FIRST);
             fireTableDataChanged();
         }
 
+        public void updateFiles(List<FtpFile> fresh) {
+            FileListDiff.apply(files, fresh, new FileListDiff.Listener() {
+                @Override
+                public void inserted(int from, int to) {
+                    fireTableRowsInserted(from, to);
+                }
+
+                @Override
+                public void removed(int from, int to) {
+                    fireTableRowsDeleted(from, to);
+                }
+
+                @Override
+                public void changed(int from, int to) {
+                    fireTableRowsUpdated(from, to);
+                }
+            });
+        }
+
+        public void addFiles(List<FtpFile> page) {
+            if (page.isEmpty()) {
+                return;
+            }
+            // The first page replaces the loading row
+            boolean placeholder = loading && files.isEmpty();
+            loading = false;
+            FileListDiff.merge(files, page, this::fireTableRowsInserted);
+            if (placeholder) {
+                // The inserted rows pushed it to the end
+                fireTableRowsDeleted(files.size(), files.size());
+            }
+        }
+
         @Override
         public int getRowCount() {
-            return files.size();
+            return loading && files.isEmpty() ? 1 : files.size();
         }
 
         @Override
@@ -206,7 +460,7 @@ public class FtpTreePanel extends BaseViewPanel {
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
             if (rowIndex >= files.size()) {
-                return "";
+                return loading && columnIndex == 0 ? LOADING : "";
             }
 
             FtpFile file = files.get(rowIndex);
@@ -3,6 +3,7 @@ package io.github.chris2011.netbeans.plugins.ftp.client.views;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpFile;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpFileOpener;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpIcons;
+import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Graphics;
@@ -11,13 +12,17 @@ import java.awt.RenderingHints;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseWheelListener;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import javax.swing.AbstractListModel;
 import javax.swing.DefaultListCellRenderer;
-import javax.swing.DefaultListModel;
 import javax.swing.Icon;
 import javax.swing.JList;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.ListSelectionModel;
+import javax.swing.UIManager;
 
 public class MillerColumn extends JScrollPane {
 
@@ -26,31 +31,37 @@ public class MillerColumn extends JScrollPane {
         void onDirectorySelected(FtpFile directory, MillerColumn sourceColumn);
     }
 
+    private static final String LOADING_TEXT = "Loading...";
+
     private final JList<FtpFile> list;
+    private final FtpFileListModel model;
     private final String path;
     private final ColumnListener listener;
+    private boolean loading;
 
     public MillerColumn(List<FtpFile> files, String path, ColumnListener listener,
         MouseWheelListener horizontalScrollListener, KeyListener keyListener) {
         this.path = path;
         this.listener = listener;
 
-        DefaultListModel<FtpFile> model = new DefaultListModel<>();
-        files.stream()
-            .sorted((a, b) -> {
-                if (a.isDirectory() && !b.isDirectory()) {
-                    return -1;
-                }
-                if (!a.isDirectory() && b.isDirectory()) {
-                    return 1;
-                }
-                return a.getName().compareToIgnoreCase(b.getName());
-            })
-            .forEach(model::addElement);
+        model = new FtpFileListModel();
+        model.addFiles(files);
 
-        list = new JList<>(model);
+        list = new JList<FtpFile>(model) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                if (loading && getModel().getSize() == 0) {
+                    paintLoadingPlaceholder(this, g);
+                }
+            }
+        };
         list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         list.setCellRenderer(new FtpFileListCellRenderer());
+        // The rows are HTML; without a fixed height every added page would measure all of them again
+        FtpFile prototype = new FtpFile("Prototype", path + "/Prototype", false);
+        list.setFixedCellHeight(list.getCellRenderer()
+            .getListCellRendererComponent(list, prototype, 0, false, false).getPreferredSize().height);
 
         // Add keyboard navigation
         list.addKeyListener(keyListener);
@@ -70,6 +81,16 @@ public class MillerColumn extends JScrollPane {
                     }
                 }
             }
+
+            @Override
+            public void mousePressed(java.awt.event.MouseEvent e) {
+                showPopup(e);
+            }
+
+            @Override
+            public void mouseReleased(java.awt.event.MouseEvent e) {
+                showPopup(e);
+            }
         });
 
         setViewportView(list);
@@ -94,6 +115,41 @@ public class MillerColumn extends JScrollPane {
         return path;
     }
 
+    /**
+     * Merges another page of a streamed listing into the column, keeping the
+     * current selection on the same entry.
+     */
+    public void addFiles(List<FtpFile> files) {
+        FtpFile selected = list.getSelectedValue();
+        model.addFiles(files);
+
+        if (selected != null) {
+            list.setSelectedValue(selected, false);
+        } else if (list.isFocusOwner() && model.getSize() > 0) {
+            list.setSelectedIndex(0);
+        }
+    }
+
+    /**
+     * Shows a loading placeholder while the column has no entries yet.
+     */
+    public void setLoading(boolean loading) {
+        if (this.loading != loading) {
+            this.loading = loading;
+            list.repaint();
+        }
+    }
+
+    private static void paintLoadingPlaceholder(JList<?> list, Graphics g) {
+        Color color = UIManager.getColor("Label.disabledForeground");
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.setFont(list.getFont());
+        g2.setColor(color != null ? color : Color.GRAY);
+        g2.drawString(LOADING_TEXT, 8, g2.getFontMetrics().getAscent() + 6);
+        g2.dispose();
+    }
+
     @Override
     public void requestFocus() {
         list.requestFocusInWindow();
@@ -102,6 +158,33 @@ public class MillerColumn extends JScrollPane {
         }
     }
 
+    private void showPopup(java.awt.event.MouseEvent e) {
+        if (!e.isPopupTrigger() || !(listener instanceof MillerColumnsPanel)) {
+            return;
+        }
+        int index = list.locationToIndex(e.getPoint());
+        if (index < 0 || !list.getCellBounds(index, index).contains(e.getPoint())) {
+            return;
+        }
+        list.setSelectedIndex(index);
+        FtpFile file = model.getElementAt(index);
+        if (file.isDirectory()) {
+            MillerColumnsPanel panel = (MillerColumnsPanel) listener;
+            JMenuItem downloadItem = new JMenuItem("Download Folder...");
+            downloadItem.addActionListener(a -> panel.downloadFolder(file));
+            JMenuItem syncItem = new JMenuItem("Synchronize from Local Folder...");
+            syncItem.addActionListener(a -> panel.syncFolder(file));
+            JMenuItem watchItem = new JMenuItem(panel.isWatching(file)
+                ? "Stop Synchronizing" : "Keep Synchronized with Local Folder...");
+            watchItem.addActionListener(a -> panel.toggleWatching(file));
+            JPopupMenu menu = new JPopupMenu();
+            menu.add(downloadItem);
+            menu.add(syncItem);
+            menu.add(watchItem);
+            menu.show(list, e.getX(), e.getY());
+        }
+    }
+
     private void openFileInEditor(FtpFile file) {
         // Need to pass FtpClient or use callback to parent
         if (listener instanceof MillerColumnsPanel) {
@@ -110,6 +193,63 @@ public class MillerColumn extends JScrollPane {
         }
     }
 
+    /**
+     * Replaces the entries with a fresh listing, touching only changed rows.
+     */
+    public void updateFiles(List<FtpFile> files) {
+        FtpFile selected = list.getSelectedValue();
+        model.updateFiles(files);
+
+        if (selected != null && model.indexOf(selected) >= 0) {
+            list.setSelectedValue(selected, false);
+        }
+    }
+
+    private static class FtpFileListModel extends AbstractListModel<FtpFile> {
+
+        private final List<FtpFile> files = new ArrayList<>();
+
+        void updateFiles(List<FtpFile> fresh) {
+            FileListDiff.apply(files, fresh, new FileListDiff.Listener() {
+                @Override
+                public void inserted(int from, int to) {
+                    fireIntervalAdded(FtpFileListModel.this, from, to);
+                }
+
+                @Override
+                public void removed(int from, int to) {
+                    fireIntervalRemoved(FtpFileListModel.this, from, to);
+                }
+
+                @Override
+                public void changed(int from, int to) {
+                    fireContentsChanged(FtpFileListModel.this, from, to);
+                }
+            });
+        }
+
+        int indexOf(FtpFile file) {
+            return files.indexOf(file);
+        }
+
+        void addFiles(List<FtpFile> page) {
+            if (page.isEmpty()) {
+                return;
+            }
+            FileListDiff.merge(files, page, (from, to) -> fireIntervalAdded(this, from, to));
+        }
+
+        @Override
+        public int getSize() {
+            return files.size();
+        }
+
+        @Override
+        public FtpFile getElementAt(int index) {
+            return files.get(index);
+        }
+    }
+
     private static class FtpFileListCellRenderer extends DefaultListCellRenderer {
 
         private static final Icon FOLDER_ICON = FtpIcons.getFolderIcon();
@@ -3,6 +3,10 @@ package io.github.chris2011.netbeans.plugins.ftp.client.views;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpExplorerTopComponent;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpFile;
 import io.github.chris2011.netbeans.plugins.ftp.client.FtpFileOpener;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpFolderDownload;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpFolderWatcher;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpMirrorSync;
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpIcons;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Dimension;
@@ -12,7 +16,9 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.swing.BoxLayout;
 import javax.swing.JList;
 import javax.swing.JPanel;
@@ -20,20 +26,26 @@ import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JViewport;
 import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeListener;
+import org.openide.util.WeakListeners;
 
 public class MillerColumnsPanel extends BaseViewPanel implements MillerColumn.ColumnListener {
 
     private final List<MillerColumn> columns;
+    private final Map<MillerColumn, DirectoryLoader.Load> loads = new HashMap<>();
+    private final DirectoryLoader loader;
     private final JPanel columnsContainer;
     private final JScrollPane scrollPane;
     private final MouseWheelListener horizontalScrollListener;
     private final MillerKeyListener keyListener;
+    private final ChangeListener iconListener = e -> repaint();
     private int currentColumnIndex = 0;
 
     public MillerColumnsPanel(FtpExplorerTopComponent parent) {
         super(parent);
         this.columns = new ArrayList<>();
         this.keyListener = new MillerKeyListener();
+        this.loader = new DirectoryLoader(this);
 
         setLayout(new BorderLayout());
 
@@ -79,6 +91,9 @@ public class MillerColumnsPanel extends BaseViewPanel implements MillerColumn.Co
         
         addMouseWheelListener(horizontalScrollListener);
 
+        // File icons are resolved in the background, repaint once they arrive
+        FtpIcons.addChangeListener(WeakListeners.change(iconListener, null));
+
 //        installHorizontalScrollSupport(this);
     }
 
@@ -94,6 +109,8 @@ public class MillerColumnsPanel extends BaseViewPanel implements MillerColumn.Co
 
     @Override
     public void clear() {
+        loads.values().forEach(DirectoryLoader.Load::cancel);
+        loads.clear();
         columnsContainer.removeAll();
         columns.clear();
         currentColumnIndex = 0;
@@ -107,8 +124,7 @@ public class MillerColumnsPanel extends BaseViewPanel implements MillerColumn.Co
 
         // Remove all columns to the right of the selected one
         for (int i = columns.size() - 1; i > columnIndex; i--) {
-            columnsContainer.remove(i);
-            columns.remove(i);
+            removeColumn(i);
         }
 
         String newPath = directory.getPath();
@@ -119,18 +135,66 @@ public class MillerColumnsPanel extends BaseViewPanel implements MillerColumn.Co
         FtpFileOpener.openFile(file, parentComponent.getFtpClient());
     }
 
+    public void downloadFolder(FtpFile directory) {
+        FtpFolderDownload.downloadFolder(directory, parentComponent.getFtpClient());
+    }
+
+    public void syncFolder(FtpFile directory) {
+        FtpMirrorSync.syncFolder(directory, parentComponent.getFtpClient());
+    }
+
+    public boolean isWatching(FtpFile directory) {
+        return FtpFolderWatcher.isWatching(directory, parentComponent.getFtpClient());
+    }
+
+    public void toggleWatching(FtpFile directory) {
+        if (isWatching(directory)) {
+            FtpFolderWatcher.stopWatching(directory, parentComponent.getFtpClient());
+        } else {
+            FtpFolderWatcher.startWatching(directory, parentComponent.getFtpClient());
+        }
+    }
+
     private void loadPath(String path) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                List<FtpFile> files = listFiles(path);
-                addColumn(files, path);
-            } catch (IOException e) {
-                e.printStackTrace();
+        // Show the last known listing right away and revalidate it in the background
+        List<FtpFile> lastKnown = getLastKnownListing(path);
+        MillerColumn column = addColumn(lastKnown != null ? lastKnown : new ArrayList<>(), path);
+        column.setLoading(lastKnown == null);
+
+        loads.put(column, loader.load(path, lastKnown != null, new DirectoryLoader.Callback() {
+            @Override
+            public void addFiles(List<FtpFile> page) {
+                column.addFiles(page);
             }
-        });
+
+            @Override
+            public void updateFiles(List<FtpFile> files) {
+                column.updateFiles(files);
+            }
+
+            @Override
+            public void finished(IOException error) {
+                loads.remove(column);
+                column.setLoading(false);
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            }
+        }));
+    }
+
+    private void removeColumn(int index) {
+        MillerColumn column = columns.remove(index);
+        columnsContainer.remove(column);
+
+        // Nobody is looking at this directory any more
+        DirectoryLoader.Load load = loads.remove(column);
+        if (load != null) {
+            load.cancel();
+        }
     }
 
-    private void addColumn(List<FtpFile> files, String path) {
+    private MillerColumn addColumn(List<FtpFile> files, String path) {
         MillerColumn column = new MillerColumn(files, path, this, horizontalScrollListener, keyListener);
 
         columnsContainer.add(column);
@@ -155,6 +219,8 @@ public class MillerColumnsPanel extends BaseViewPanel implements MillerColumn.Co
         SwingUtilities.invokeLater(() -> {
             scrollToLastColumn();
         });
+
+        return column;
     }
 
     private void installHorizontalScrollSupport(Component component) {
@@ -372,9 +438,7 @@ public class MillerColumnsPanel extends BaseViewPanel implements MillerColumn.Co
         private void handleLeftArrow() {
             if (currentColumnIndex > 0) {
                 // Remove current column and move focus to previous column
-                int columnToRemove = currentColumnIndex;
-                columnsContainer.remove(columnToRemove);
-                columns.remove(columnToRemove);
+                removeColumn(currentColumnIndex);
                 currentColumnIndex--;
 
                 focusColumn(currentColumnIndex);
@@ -0,0 +1,42 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BandwidthLimiterTest {
+
+    @Test
+    void noWaitWithoutDebtOrLimit() {
+        assertEquals(0, BandwidthLimiter.waitMillis(0, 1024));
+        assertEquals(0, BandwidthLimiter.waitMillis(512, 1024));
+        assertEquals(0, BandwidthLimiter.waitMillis(-4096, 0));
+        assertEquals(0, BandwidthLimiter.waitMillis(-4096, -1));
+    }
+
+    @Test
+    void debtIsPaidBackAtTheRate() {
+        assertEquals(1000, BandwidthLimiter.waitMillis(-1024, 1024));
+        assertEquals(500, BandwidthLimiter.waitMillis(-512, 1024));
+        // A buffer larger than the rate waits several seconds
+        assertEquals(4000, BandwidthLimiter.waitMillis(-65536, 16384));
+    }
+
+    @Test
+    void partialMillisecondsRoundUp() {
+        assertEquals(1, BandwidthLimiter.waitMillis(-1, 1_000_000));
+        assertEquals(1, BandwidthLimiter.waitMillis(-0.001, 1024));
+    }
+
+    @Test
+    void unlimitedLimiterNeverBlocks() throws Exception {
+        BandwidthLimiter limiter = new BandwidthLimiter(null);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire(1 << 20);
+        }
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(0, limiter.getRate());
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.function.BiFunction;
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Retained heap per {@link FtpFile}, measured as the growth of the used heap
+ * after GC while a listing of {@link #ENTRIES} entries is reachable: unique
+ * names, {@link #DIRECTORIES} parent directories, the same owner and group.
+ * The names and the list holding the entries are included.
+ * <p>
+ * For comparison, the same listing is measured in {@link BaselineFtpFile},
+ * the representation before entries were packed: full path, permission
+ * string, {@link LocalDateTime} and owner and group strings per entry.
+ * <p>
+ * Skipped by default, GC based numbers are too noisy for every build:
+ * <pre>mvn test -Dtest=FtpFileMemoryBenchmark -Dftp.benchmark=true</pre>
+ */
+@EnabledIfSystemProperty(named = "ftp.benchmark", matches = "true")
+class FtpFileMemoryBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final int DIRECTORIES = 1_000;
+    // Generous, the compact form measured 105 bytes on JDK 21 with compressed oops
+    private static final double MAX_BYTES_PER_ENTRY = 160;
+
+    /**
+     * The fields and conversions of {@link FtpFile} before it was packed.
+     */
+    private static final class BaselineFtpFile {
+
+        private final String name;
+        private final String path;
+        private final boolean isDirectory;
+        private final long size;
+        private final LocalDateTime lastModified;
+        private final String permissions;
+        private final String owner;
+        private final String group;
+        private final boolean root;
+
+        BaselineFtpFile(String path, FTPFile ftpFile) {
+            this.name = ftpFile.getName();
+            this.path = path.endsWith("/") ? path + ftpFile.getName() : path + "/" + ftpFile.getName();
+            this.isDirectory = ftpFile.isDirectory();
+            this.size = ftpFile.getSize();
+            this.lastModified = ftpFile.getTimestamp().getTime().toInstant().atZone(ZoneId.systemDefault())
+                .toLocalDateTime();
+            this.permissions = ftpFile.toFormattedString().substring(0, 10);
+            this.owner = ftpFile.getUser();
+            this.group = ftpFile.getGroup();
+            this.root = false;
+        }
+    }
+
+    @Test
+    void bytesPerEntry() {
+        double baseline = measure(BaselineFtpFile::new);
+        double compact = measure(FtpFile::new);
+
+        System.out.printf("FtpFile: %.1f bytes/entry, before packing %.1f bytes/entry"
+            + " (%d entries, %d directories)%n", compact, baseline, ENTRIES, DIRECTORIES);
+        assertTrue(compact < MAX_BYTES_PER_ENTRY, "bytes per entry: " + compact);
+        assertTrue(compact < baseline, "packed " + compact + " vs. " + baseline);
+    }
+
+    private static double measure(BiFunction<String, FTPFile, ?> factory) {
+        long before = usedHeapAfterGc();
+        List<Object> listing = createListing(factory);
+        long after = usedHeapAfterGc();
+        double bytesPerEntry = (after - before) / (double) listing.size();
+        // Keeps the listing reachable until measured
+        assertEquals(ENTRIES, listing.size());
+        return bytesPerEntry;
+    }
+
+    private static List<Object> createListing(BiFunction<String, FTPFile, ?> factory) {
+        Calendar timestamp = Calendar.getInstance();
+        List<Object> listing = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            // Parsed entries are thrown away, as after a real listing
+            FTPFile parsed = new FTPFile();
+            parsed.setName("file-" + i + ".txt");
+            parsed.setType(FTPFile.FILE_TYPE);
+            parsed.setSize(i);
+            parsed.setPermission(FTPFile.USER_ACCESS, FTPFile.READ_PERMISSION, true);
+            parsed.setPermission(FTPFile.USER_ACCESS, FTPFile.WRITE_PERMISSION, true);
+            parsed.setPermission(FTPFile.GROUP_ACCESS, FTPFile.READ_PERMISSION, true);
+            parsed.setPermission(FTPFile.WORLD_ACCESS, FTPFile.READ_PERMISSION, true);
+            timestamp.setTimeInMillis(1_700_000_000_000L + i * 1000L);
+            parsed.setTimestamp(timestamp);
+            // New strings per entry, as the parser creates them
+            parsed.setUser(new String("www-data"));
+            parsed.setGroup(new String("www-data"));
+            listing.add(factory.apply(new String("/srv/www/dir-" + i % DIRECTORIES), parsed));
+        }
+        return listing;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Repeat until the number settles, a single System.gc() is only a hint
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (Math.abs(now - used) < 64 * 1024) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Calendar;
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class FtpFileTest {
+
+    private static FtpFile restore(String permissions) {
+        return FtpFile.restore("name", "/dir", permissions.startsWith("d"), 0, 0, permissions, "", "");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "-rw-r--r--", "drwxr-xr-x", "-rwxrwxrwx", "----------", "lrwxrwxrwx",
+        "-rwsr-xr-x", "-rwSr--r--", "-rwxr-sr-x", "-rw-r-Sr--", "drwxrwxrwt", "drwxrwxrwT",
+        "-rwsrwsrwt", "-rwSrwSrwT", "brw-rw----", "crw-rw-rw-", "prw-r--r--", "srwxr-xr-x"
+    })
+    void permissionStringsRoundTrip(String permissions) {
+        assertEquals(permissions, restore(permissions).getPermissions());
+    }
+
+    @Test
+    void unknownTypeAndMalformedPermissions() {
+        assertEquals("?rw-r--r--", restore("xrw-r--r--").getPermissions());
+        assertEquals("-rw-r--r--", restore("-rw").getPermissions());
+        assertEquals("drwxr-xr-x", restore("d").getPermissions());
+        assertEquals("-rw-r--r--", FtpFile.restore("a", "/", false, 0, 0, null, "", "").getPermissions());
+    }
+
+    @Test
+    void octalIgnoresTypeAndSpecialBits() {
+        assertEquals("-rwsr-xr-x (755)", restore("-rwsr-xr-x").getPermissionsWithOctal());
+        assertEquals("drwxrwxrwt (777)", restore("drwxrwxrwt").getPermissionsWithOctal());
+    }
+
+    @Test
+    void packsFtpFilePermissionsAndType() {
+        FTPFile listed = new FTPFile();
+        listed.setName("script.sh");
+        listed.setType(FTPFile.FILE_TYPE);
+        listed.setPermission(FTPFile.USER_ACCESS, FTPFile.READ_PERMISSION, true);
+        listed.setPermission(FTPFile.USER_ACCESS, FTPFile.WRITE_PERMISSION, true);
+        listed.setPermission(FTPFile.USER_ACCESS, FTPFile.EXECUTE_PERMISSION, true);
+        listed.setPermission(FTPFile.GROUP_ACCESS, FTPFile.READ_PERMISSION, true);
+        listed.setPermission(FTPFile.WORLD_ACCESS, FTPFile.EXECUTE_PERMISSION, true);
+        listed.setSize(42);
+        Calendar timestamp = Calendar.getInstance();
+        timestamp.setTimeInMillis(1_700_000_000_000L);
+        listed.setTimestamp(timestamp);
+        listed.setUser("www");
+        listed.setGroup("staff");
+
+        FtpFile file = new FtpFile("/var/www", listed);
+        assertEquals("-rwxr----x", file.getPermissions());
+        assertEquals("/var/www/script.sh", file.getPath());
+        assertEquals("/var/www", file.getParentPath());
+        assertEquals(42, file.getSize());
+        assertEquals(1_700_000_000_000L, file.getLastModifiedMillis());
+        assertEquals("www:staff", file.getOwnerDisplay());
+
+        listed.setType(FTPFile.DIRECTORY_TYPE);
+        assertEquals('d', new FtpFile("/var/www", listed).getPermissions().charAt(0));
+        listed.setType(FTPFile.SYMBOLIC_LINK_TYPE);
+        assertEquals('l', new FtpFile("/var/www", listed).getPermissions().charAt(0));
+    }
+
+    @Test
+    void pathsAndIdentity() {
+        FtpFile inRoot = new FtpFile("a.txt", "/a.txt", false);
+        assertEquals("/a.txt", inRoot.getPath());
+        assertEquals("/", inRoot.getParentPath());
+
+        FtpFile trailingSlash = FtpFile.restore("b", "/x/y/", false, 1, 2, "-rw-r--r--", "", "");
+        assertEquals("/x/y/b", trailingSlash.getPath());
+
+        FtpFile root = FtpFile.createRoot("server");
+        assertTrue(root.isRoot());
+        assertEquals("/", root.getPath());
+        assertNull(root.getParentPath());
+
+        FtpFile same = FtpFile.restore("b", "/x/y", true, 9, 9, "drwxr-xr-x", "o", "g");
+        assertEquals(trailingSlash, same);
+        assertEquals(trailingSlash.hashCode(), same.hashCode());
+        assertFalse(trailingSlash.hasSameAttributes(same));
+        assertNotEquals(trailingSlash, FtpFile.restore("b", "/x", false, 1, 2, "-rw-r--r--", "", ""));
+    }
+
+    @Test
+    void directoriesFirstThenNameIgnoringCase() {
+        FtpFile dir = new FtpFile("zeta", "/zeta", true);
+        FtpFile lower = new FtpFile("alpha", "/alpha", false);
+        FtpFile upper = new FtpFile("Beta", "/Beta", false);
+        assertTrue(FtpFile.DIRECTORIES_FIRST.compare(dir, lower) < 0);
+        assertTrue(FtpFile.DIRECTORIES_FIRST.compare(lower, upper) < 0);
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class FtpListingStoreTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "", "plain", "with space", "tab\there", "line\nbreak", "carriage\rreturn", "back\\slash",
+        "#comment", "trailing\\", "\\t literally", "ünïcödé/路径"
+    })
+    void escapedFieldsSplitBack(String value) {
+        String escaped = FtpListingStore.escape(value);
+        assertFalse(escaped.contains("\t") || escaped.contains("\n") || escaped.contains("\r"));
+        assertArrayEquals(new String[]{value, "x", value}, FtpListingStore.split(escaped + "\tx\t" + escaped));
+    }
+
+    @Test
+    void nullIsEmpty() {
+        assertEquals("", FtpListingStore.escape(null));
+    }
+
+    @Test
+    void escapesLeadingHash() {
+        // Header lines start with '#', an entry must never look like one
+        assertEquals("\\#name", FtpListingStore.escape("#name"));
+    }
+
+    @Test
+    void emptyFieldsAreKept() {
+        assertArrayEquals(new String[]{"a", "", "", "b", ""}, FtpListingStore.split("a\t\t\tb\t"));
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+class FtpSessionPoolTest {
+
+    private static long delay(int attempt) {
+        return Math.min(30_000, 500L << Math.min(attempt, 16));
+    }
+
+    @Test
+    void backoffDelayIsJitteredBetweenHalfAndFullDelay() {
+        for (int attempt : new int[]{0, 1, 2, 3, 4, 5, 6, 7, 16, 17, 63, Integer.MAX_VALUE}) {
+            long delay = delay(attempt);
+            for (int i = 0; i < 200; i++) {
+                long backoff = FtpSessionPool.backoffDelay(attempt);
+                assertTrue(backoff >= delay / 2 && backoff <= delay, attempt + ": " + backoff);
+            }
+        }
+    }
+
+    @Test
+    void backoffDelayGrowsBelowTheCap() {
+        // Below the cap the ranges of consecutive attempts only touch, so a later attempt never waits less
+        for (int attempt = 0; delay(attempt + 1) < 30_000; attempt++) {
+            for (int i = 0; i < 200; i++) {
+                long earlier = FtpSessionPool.backoffDelay(attempt);
+                long later = FtpSessionPool.backoffDelay(attempt + 1);
+                assertTrue(earlier <= later, attempt + ": " + earlier + " > " + later);
+            }
+        }
+    }
+
+    /**
+     * A session that claims to be logged in, without a server.
+     */
+    private static FtpSession session() {
+        return new FtpSession() {
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+
+            @Override
+            public boolean logout() {
+                return true;
+            }
+
+            @Override
+            public void disconnect() {
+            }
+        };
+    }
+
+    @Test
+    void tryBorrowKeepsTheReserveFree() throws IOException {
+        FtpSessionPool pool = new FtpSessionPool(FtpSessionPoolTest::session, 3);
+        try {
+            FtpSession first = pool.tryBorrow(1);
+            FtpSession second = pool.tryBorrow(1);
+            assertNotNull(first);
+            assertNotNull(second);
+            assertNull(pool.tryBorrow(1));
+            assertEquals(2, pool.getOpenCount());
+
+            // The reserved session is still there for a blocking borrow
+            FtpSession third = pool.borrow();
+            assertEquals(3, pool.getOpenCount());
+            assertNull(pool.tryBorrow(0));
+
+            // Idle sessions count as free and are handed out first
+            pool.release(second);
+            pool.release(third);
+            assertSame(third, pool.tryBorrow(1));
+            assertNull(pool.tryBorrow(1));
+            assertEquals(3, pool.getOpenCount());
+        } finally {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FtpSyncManifestTest {
+
+    @TempDir
+    Path dir;
+
+    private FtpSyncManifest load() {
+        return FtpSyncManifest.load(dir.resolve("sync").resolve("manifest.txt"), dir.resolve("local"), "/srv/www");
+    }
+
+    @Test
+    void savedEntriesLoadBack() {
+        FtpSyncManifest manifest = load();
+        manifest.put("index.html", new FtpSyncManifest.Entry(12, 1_700_000_000_000L, "abc"));
+        manifest.put("odd\tname\\with\nbreaks", new FtpSyncManifest.Entry(0, 1, "def"));
+        manifest.put("#not-a-header", new FtpSyncManifest.Entry(3, 4, "123"));
+        manifest.save();
+
+        FtpSyncManifest loaded = load();
+        assertEquals(Set.of("index.html", "odd\tname\\with\nbreaks", "#not-a-header"), loaded.paths());
+        FtpSyncManifest.Entry entry = loaded.get("index.html");
+        assertEquals(12, entry.size);
+        assertEquals(1_700_000_000_000L, entry.lastModified);
+        assertEquals("abc", entry.hash);
+        assertTrue(entry.matches(12, 1_700_000_000_000L));
+        assertFalse(entry.matches(12, 1_700_000_000_001L));
+        assertEquals("def", loaded.get("odd\tname\\with\nbreaks").hash);
+    }
+
+    @Test
+    void removedEntriesAreGoneAfterReload() {
+        FtpSyncManifest manifest = load();
+        manifest.put("a", new FtpSyncManifest.Entry(1, 1, "a"));
+        manifest.put("b", new FtpSyncManifest.Entry(2, 2, "b"));
+        manifest.save();
+
+        manifest.remove("a");
+        manifest.save();
+        assertEquals(Set.of("b"), load().paths());
+    }
+
+    @Test
+    void unchangedManifestIsNotWritten() throws IOException {
+        FtpSyncManifest manifest = load();
+        manifest.remove("missing");
+        manifest.save();
+        assertFalse(Files.exists(dir.resolve("sync")));
+
+        manifest.put("a", new FtpSyncManifest.Entry(1, 1, "a"));
+        manifest.save();
+        Path file = dir.resolve("sync").resolve("manifest.txt");
+        Files.delete(file);
+        manifest.save();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void corruptManifestStartsEmpty() throws IOException {
+        Path file = dir.resolve("sync").resolve("manifest.txt");
+        Files.createDirectories(file.getParent());
+        Files.write(file, "#local\t/srv/www\nindex.html\t12\tnot-a-number\tabc\n".getBytes(StandardCharsets.UTF_8));
+
+        FtpSyncManifest manifest = load();
+        assertTrue(manifest.paths().isEmpty());
+        assertNull(manifest.get("index.html"));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.chris2011.netbeans.plugins.ftp.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FtpTransferJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void segmentOffsetsLoadBack() {
+        Path file = dir.resolve("transfers.journal");
+        Path target = dir.resolve("big.iso");
+        FtpTransferJournal journal = new FtpTransferJournal(file);
+        FtpTransferJournal.Entry entry = journal.beginSegmented("c1", "/pub/big.iso", target, "4000",
+            "20240101120000", 4);
+        journal.progress(entry, 0, 1000);
+        journal.progress(entry, 2, 123);
+        journal.save();
+
+        FtpTransferJournal.Entry loaded = new FtpTransferJournal(file).find("c1",
+            FtpTransferJournal.Direction.DOWNLOAD, "/pub/big.iso", target);
+        assertTrue(loaded.isSegmented());
+        assertTrue(loaded.matches("4000", "20240101120000"));
+        assertEquals(4, loaded.getSegmentCount());
+        assertEquals(1000, loaded.getSegmentOffset(0));
+        assertEquals(0, loaded.getSegmentOffset(1));
+        assertEquals(123, loaded.getSegmentOffset(2));
+        assertEquals(0, loaded.getSegmentOffset(3));
+    }
+
+    @Test
+    void singleStreamEntriesStayUnsegmented() throws IOException {
+        Path file = dir.resolve("transfers.journal");
+        Path target = dir.resolve("a.txt");
+        FtpTransferJournal journal = new FtpTransferJournal(file);
+        FtpTransferJournal.Entry entry = journal.begin("c1", FtpTransferJournal.Direction.DOWNLOAD, "/a.txt",
+            target, "10", null);
+        journal.progress(entry, 7);
+        journal.save();
+
+        FtpTransferJournal.Entry loaded = new FtpTransferJournal(file).find("c1",
+            FtpTransferJournal.Direction.DOWNLOAD, "/a.txt", target);
+        assertFalse(loaded.isSegmented());
+        assertEquals(7, loaded.getOffset());
+        assertTrue(loaded.matches("10", null));
+
+        // Journals written before segments were recorded have one field less
+        Files.write(file, ("id\tc1\tDOWNLOAD\t/b.txt\t" + target + "\t10\t\t5\n").getBytes(StandardCharsets.UTF_8));
+        FtpTransferJournal.Entry old = new FtpTransferJournal(file).find("c1",
+            FtpTransferJournal.Direction.DOWNLOAD, "/b.txt", target);
+        assertFalse(old.isSegmented());
+        assertEquals(5, old.getOffset());
+    }
+
+    @Test
+    void beginReplacesTheEntryForTheSameFiles() {
+        Path target = dir.resolve("big.iso");
+        FtpTransferJournal journal = new FtpTransferJournal(dir.resolve("transfers.journal"));
+        FtpTransferJournal.Entry segmented = journal.beginSegmented("c1", "/big.iso", target, "4000", null, 4);
+        FtpTransferJournal.Entry single = journal.begin("c1", FtpTransferJournal.Direction.DOWNLOAD, "/big.iso",
+            target, "4000", null);
+
+        assertEquals(1, journal.getEntries("c1").size());
+        assertFalse(journal.find("c1", FtpTransferJournal.Direction.DOWNLOAD, "/big.iso", target).isSegmented());
+        journal.remove(single);
+        journal.remove(segmented);
+        assertNull(journal.find("c1", FtpTransferJournal.Direction.DOWNLOAD, "/big.iso", target));
+    }
+}
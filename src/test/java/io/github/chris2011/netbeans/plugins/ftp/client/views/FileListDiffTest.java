@@ -0,0 +1,196 @@
+package io.github.chris2011.netbeans.plugins.ftp.client.views;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.chris2011.netbeans.plugins.ftp.client.FtpFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.jupiter.api.Test;
+
+class FileListDiffTest {
+
+    private static FtpFile file(String name) {
+        return sized(name, false, 0);
+    }
+
+    private static FtpFile dir(String name) {
+        return sized(name, true, 0);
+    }
+
+    private static FtpFile sized(String name, boolean isDirectory, long size) {
+        FTPFile listed = new FTPFile();
+        listed.setName(name);
+        listed.setType(isDirectory ? FTPFile.DIRECTORY_TYPE : FTPFile.FILE_TYPE);
+        listed.setSize(size);
+        // Without a timestamp the current time is used, which would make equal entries differ
+        Calendar timestamp = Calendar.getInstance();
+        timestamp.setTimeInMillis(1_700_000_000_000L);
+        listed.setTimestamp(timestamp);
+        return new FtpFile("/dir", listed);
+    }
+
+    private static List<FtpFile> sorted(FtpFile... files) {
+        List<FtpFile> list = new ArrayList<>(Arrays.asList(files));
+        list.sort(FtpFile.DIRECTORIES_FIRST);
+        return list;
+    }
+
+    /**
+     * Replays the reported events on a copy of the old list, as a view does.
+     */
+    private static final class Replay implements FileListDiff.Listener {
+
+        private final List<FtpFile> target;
+        private final List<FtpFile> view;
+        private final List<String> events = new ArrayList<>();
+
+        Replay(List<FtpFile> target) {
+            this.target = target;
+            this.view = new ArrayList<>(target);
+        }
+
+        @Override
+        public void inserted(int from, int to) {
+            view.addAll(from, target.subList(from, to + 1));
+            events.add("+" + range(from, to));
+        }
+
+        @Override
+        public void removed(int from, int to) {
+            view.subList(from, to + 1).clear();
+            events.add("-" + range(from, to));
+        }
+
+        @Override
+        public void changed(int from, int to) {
+            for (int i = from; i <= to; i++) {
+                view.set(i, target.get(i));
+            }
+            events.add("~" + range(from, to));
+        }
+
+        private static String range(int from, int to) {
+            return from == to ? Integer.toString(from) : from + ".." + to;
+        }
+    }
+
+    @Test
+    void unchangedListingReportsNothing() {
+        List<FtpFile> target = sorted(dir("src"), file("a"), file("b"));
+        Replay replay = new Replay(target);
+        FileListDiff.apply(target, Arrays.asList(file("b"), dir("src"), file("a")), replay);
+        assertTrue(replay.events.isEmpty());
+    }
+
+    @Test
+    void reportsOnlyRowsThatChanged() {
+        List<FtpFile> target = sorted(dir("src"), file("a"), file("b"), file("c"));
+        Replay replay = new Replay(target);
+        FtpFile biggerB = sized("b", false, 100);
+
+        FileListDiff.apply(target, Arrays.asList(dir("src"), biggerB, file("c"), file("d")), replay);
+
+        assertEquals(sorted(dir("src"), biggerB, file("c"), file("d")), target);
+        assertEquals(Arrays.asList("-1", "~1", "+3"), replay.events);
+        assertEquals(target, replay.view);
+        assertEquals(100, target.get(1).getSize());
+    }
+
+    @Test
+    void neighbouringRowsAreReportedAsOneRange() {
+        List<FtpFile> target = sorted(file("a"), file("b"), file("c"), file("d"), file("e"), file("h"));
+        Replay replay = new Replay(target);
+
+        FileListDiff.apply(target, Arrays.asList(file("a"), file("e"), file("f"), file("g"),
+            sized("h", false, 1)), replay);
+
+        assertEquals(Arrays.asList("-1..3", "+2..3", "~4"), replay.events);
+        assertEquals(target, replay.view);
+    }
+
+    @Test
+    void randomUpdatesReplayToTheFreshListing() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<FtpFile> target = randomListing(random);
+            target.sort(FtpFile.DIRECTORIES_FIRST);
+            List<FtpFile> fresh = randomListing(random);
+            Replay replay = new Replay(target);
+
+            FileListDiff.apply(target, fresh, replay);
+
+            fresh.sort(FtpFile.DIRECTORIES_FIRST);
+            assertEquals(fresh, target);
+            assertEquals(target, replay.view);
+        }
+    }
+
+    @Test
+    void mergeReportsInsertedRangesInAscendingOrder() {
+        List<FtpFile> target = sorted(dir("m"), file("b"), file("e"));
+        List<int[]> ranges = new ArrayList<>();
+
+        FileListDiff.merge(target, Arrays.asList(file("f"), file("a"), dir("z"), file("c"), file("d")),
+            (from, to) -> ranges.add(new int[]{from, to}));
+
+        assertEquals(sorted(dir("m"), dir("z"), file("a"), file("b"), file("c"), file("d"), file("e"),
+            file("f")), target);
+        assertEquals(Arrays.asList("1-2", "4-5", "7-7"), format(ranges));
+    }
+
+    @Test
+    void mergedPagesReplayToTheSortedListing() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            List<FtpFile> all = new ArrayList<>(randomListing(random));
+            Collections.shuffle(all, random);
+            List<FtpFile> target = new ArrayList<>();
+            List<FtpFile> view = new ArrayList<>();
+
+            for (int from = 0; from < all.size(); ) {
+                int to = Math.min(all.size(), from + 1 + random.nextInt(6));
+                int[] last = {-1};
+                FileListDiff.merge(target, all.subList(from, to), (first, end) -> {
+                    assertTrue(first > last[0], "ranges must ascend");
+                    last[0] = end;
+                    for (int i = first; i <= end; i++) {
+                        view.add(i, target.get(i));
+                    }
+                });
+                assertEquals(target, view);
+                from = to;
+            }
+
+            all.sort(FtpFile.DIRECTORIES_FIRST);
+            assertEquals(all, target);
+        }
+    }
+
+    private static List<FtpFile> randomListing(Random random) {
+        List<FtpFile> listing = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            if (random.nextInt(3) == 0) {
+                continue;
+            }
+            String name = "entry" + i;
+            listing.add(random.nextBoolean()
+                ? sized(name, i % 4 == 0, random.nextInt(3))
+                : (i % 4 == 0 ? dir(name) : file(name)));
+        }
+        return listing;
+    }
+
+    private static List<String> format(List<int[]> ranges) {
+        List<String> formatted = new ArrayList<>();
+        for (int[] range : ranges) {
+            formatted.add(range[0] + "-" + range[1]);
+        }
+        return formatted;
+    }
+}